@@ -18,4 +18,15 @@
 
 # If you keep the line number information, uncomment this to
 # hide the original source file name.
-#-renamesourcefileattribute SourceFile
\ No newline at end of file
+#-renamesourcefileattribute SourceFile
+# Keep the JavaScript bridge used by the inline trailer player
+-keepclassmembers class gemenielabs.movies.TrailerPlayer$Bridge {
+    @android.webkit.JavascriptInterface <methods>;
+}
+
+# Debug logging is free in release: drop AppLog's verbose/debug/info calls and their arguments
+-assumenosideeffects class gemenielabs.movies.AppLog {
+    public static void v(...);
+    public static void d(...);
+    public static void i(...);
+}
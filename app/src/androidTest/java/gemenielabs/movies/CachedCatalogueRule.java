@@ -0,0 +1,70 @@
+package gemenielabs.movies;
+
+import android.os.SystemClock;
+
+import androidx.test.core.app.ActivityScenario;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.rules.ExternalResource;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import gemenielabs.movies.Database.MovieDao;
+import gemenielabs.movies.Database.MovieDatabase;
+import gemenielabs.movies.Database.MovieDetails;
+
+import static org.junit.Assert.fail;
+
+/**
+ * Puts a fake popular catalogue in Room for the length of a test, so MainActivity launches
+ * against a warm cache. MainActivity reads the app's real database, so the fake rows use ids no
+ * real movie has and only those are deleted again afterwards.
+ */
+public class CachedCatalogueRule extends ExternalResource {
+
+    public static final int SIZE = 20;
+    private static final long TIMEOUT_MS = 5000;
+
+    private final List<MovieDetails> rows = new ArrayList<>();
+    private MovieDao movieDao;
+
+    @Override
+    protected void before() {
+        movieDao = MovieDatabase.getInstance(
+                InstrumentationRegistry.getInstrumentation().getTargetContext()).movieDao();
+        // TMDB ids are positive, so negative ones can't replace or delete the user's stored rows
+        for (int i = 1; i <= SIZE; i++) {
+            rows.add(new MovieDetails(false, true, false, -i, 100, 10f, "Cached " + i,
+                    "Overview", 7, "2020-01-01", "/poster" + i + ".jpg", "en"));
+        }
+        movieDao.insertAll(rows);
+    }
+
+    @Override
+    protected void after() {
+        for (MovieDetails movieDetails : rows) {
+            movieDao.delete(movieDetails);
+        }
+        rows.clear();
+    }
+
+    /**
+     * Poll the grid until it has drawn a tile, failing the test if it takes too long.
+     *
+     * @param start SystemClock.elapsedRealtime() taken when the launch began.
+     * @return The time from start to the first tile, in milliseconds.
+     */
+    public static long waitForTiles(ActivityScenario<MainActivity> scenario, long start) {
+        int[] childCount = new int[1];
+        while (SystemClock.elapsedRealtime() - start < TIMEOUT_MS) {
+            scenario.onActivity(activity -> childCount[0] = activity.posterList.getChildCount());
+            if (childCount[0] > 0) {
+                return SystemClock.elapsedRealtime() - start;
+            }
+            SystemClock.sleep(5);
+        }
+        fail("Grid did not render cached posters within " + TIMEOUT_MS + "ms");
+        return TIMEOUT_MS;
+    }
+}
@@ -0,0 +1,52 @@
+package gemenielabs.movies;
+
+import android.os.Bundle;
+import android.os.SystemClock;
+
+import androidx.test.core.app.ActivityScenario;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+
+/**
+ * Times launch of MainActivity to the first drawn poster tile when Room already holds
+ * yesterday's catalogue. Results are reported as instrumentation status
+ * (first_posters_median_ms / first_posters_max_ms).
+ *
+ * For process-cold numbers run {@code adb shell am start -W} and read the "Fully drawn" line,
+ * which MainActivity reports at the same point.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ColdStartBenchmark {
+
+    private static final int ITERATIONS = 5;
+
+    // A launch that touches disk or the network on the main thread fails rather than just running slow
+    @Rule
+    public final MainThreadGuardRule mainThreadGuard = new MainThreadGuardRule();
+
+    @Rule
+    public final CachedCatalogueRule cachedCatalogue = new CachedCatalogueRule();
+
+    @Test
+    public void timeToFirstCachedPosters() {
+        long[] timings = new long[ITERATIONS];
+        for (int i = 0; i < ITERATIONS; i++) {
+            long start = SystemClock.elapsedRealtime();
+            try (ActivityScenario<MainActivity> scenario = ActivityScenario.launch(MainActivity.class)) {
+                timings[i] = CachedCatalogueRule.waitForTiles(scenario, start);
+            }
+        }
+        Arrays.sort(timings);
+
+        Bundle results = new Bundle();
+        results.putLong("first_posters_median_ms", timings[ITERATIONS / 2]);
+        results.putLong("first_posters_max_ms", timings[ITERATIONS - 1]);
+        InstrumentationRegistry.getInstrumentation().sendStatus(0, results);
+    }
+}
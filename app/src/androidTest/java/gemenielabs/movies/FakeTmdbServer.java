@@ -0,0 +1,159 @@
+package gemenielabs.movies;
+
+import android.content.res.AssetManager;
+
+import androidx.annotation.NonNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+/**
+ * A local stand-in for the TMDB and YouTube APIs.
+ *
+ * Replays the responses under the test APK's assets/tmdb (discover, videos, reviews and
+ * YouTube videos) for whatever id is asked for, after a delay drawn from the
+ * {@link Profile}, and fails a share of requests with a 500 or a 429 as the profile says.
+ */
+public class FakeTmdbServer {
+
+    // Network conditions to replay under
+    public static class Profile {
+        public final String name;
+        public final long latencyMs;
+        public final long jitterMs;
+        public final float errorRate;
+        public final float throttleRate;
+
+        public Profile(String name, long latencyMs, long jitterMs, float errorRate, float throttleRate) {
+            this.name = name;
+            this.latencyMs = latencyMs;
+            this.jitterMs = jitterMs;
+            this.errorRate = errorRate;
+            this.throttleRate = throttleRate;
+        }
+    }
+
+    private static final String ASSETS = "tmdb/";
+
+    private final MockWebServer mServer = new MockWebServer();
+    private final Map<String, String> mBodies = new HashMap<>();
+    // Fixed seed, so runs of the same profile see the same sequence of delays and failures
+    private final Random mRandom = new Random(42);
+    private final AtomicInteger mRequests = new AtomicInteger();
+    private final AtomicInteger mErrors = new AtomicInteger();
+    private final AtomicInteger mThrottled = new AtomicInteger();
+    private volatile Profile mProfile;
+
+    public FakeTmdbServer(AssetManager assets, Profile profile) throws IOException {
+        mProfile = profile;
+        for (String name : new String[]{"discover_movie", "discover_tv", "movie_videos", "movie_reviews", "youtube_videos"}) {
+            mBodies.put(name, read(assets, ASSETS + name + ".json"));
+        }
+        mServer.setDispatcher(new Dispatcher() {
+            @NonNull
+            @Override
+            public MockResponse dispatch(@NonNull RecordedRequest request) {
+                return respond(request);
+            }
+        });
+    }
+
+    public void start() throws IOException {
+        mServer.start();
+    }
+
+    public void shutdown() throws IOException {
+        mServer.shutdown();
+    }
+
+    public void setProfile(Profile profile) {
+        mProfile = profile;
+    }
+
+    public String movieDbRoot() {
+        return mServer.url("/3/").toString();
+    }
+
+    public String youtubeRoot() {
+        return mServer.url("/youtube/v3/").toString();
+    }
+
+    public int requestCount() {
+        return mRequests.get();
+    }
+
+    public int errorCount() {
+        return mErrors.get();
+    }
+
+    public int throttledCount() {
+        return mThrottled.get();
+    }
+
+    private MockResponse respond(RecordedRequest request) {
+        mRequests.incrementAndGet();
+        Profile profile = mProfile;
+        long delay;
+        float roll;
+        synchronized (mRandom) {
+            delay = profile.latencyMs + (profile.jitterMs > 0
+                    ? (long) ((mRandom.nextDouble() * 2 - 1) * profile.jitterMs) : 0);
+            roll = mRandom.nextFloat();
+        }
+        MockResponse response;
+        if (roll < profile.throttleRate) {
+            mThrottled.incrementAndGet();
+            response = new MockResponse().setResponseCode(429).setHeader("Retry-After", "1")
+                    .setBody("{\"status_code\":25,\"status_message\":\"Your request count is over the allowed limit.\"}");
+        } else if (roll < profile.throttleRate + profile.errorRate) {
+            mErrors.incrementAndGet();
+            response = new MockResponse().setResponseCode(500);
+        } else {
+            String body = bodyFor(request.getRequestUrl() == null ? "" : request.getRequestUrl().encodedPath());
+            response = body == null
+                    ? new MockResponse().setResponseCode(404)
+                    : new MockResponse().setHeader("Content-Type", "application/json").setBody(body);
+        }
+        return response.setHeadersDelay(Math.max(0, delay), TimeUnit.MILLISECONDS);
+    }
+
+    // The recorded body for an API path, whatever id it names
+    private String bodyFor(String path) {
+        if (path.equals("/3/discover/movie")) {
+            return mBodies.get("discover_movie");
+        } else if (path.equals("/3/discover/tv")) {
+            return mBodies.get("discover_tv");
+        } else if (path.startsWith("/3/movie/") && path.endsWith("/videos")) {
+            return mBodies.get("movie_videos");
+        } else if (path.startsWith("/3/movie/") && path.endsWith("/reviews")) {
+            return mBodies.get("movie_reviews");
+        } else if (path.equals("/youtube/v3/videos")) {
+            return mBodies.get("youtube_videos");
+        }
+        return null;
+    }
+
+    private static String read(AssetManager assets, String path) throws IOException {
+        try (InputStream in = assets.open(path)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package gemenielabs.movies;
+
+import org.junit.rules.TestRule;
+import org.junit.runner.Description;
+import org.junit.runners.model.Statement;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.List;
+
+import static org.junit.Assert.fail;
+
+/**
+ * Fails a test if {@link MainThreadGuard} saw main-thread disk or network access, or a slow
+ * bind, while it ran. The failure message carries every violation's stack trace.
+ *
+ * StrictMode only hands violations to the app on API 28+. On older releases the disk and network
+ * checks are logged but can't fail the test; only {@link MainThreadGuard#assertBackground} and
+ * slow binds are caught there.
+ */
+public class MainThreadGuardRule implements TestRule {
+
+    @Override
+    public Statement apply(final Statement base, Description description) {
+        return new Statement() {
+            @Override
+            public void evaluate() throws Throwable {
+                MainThreadGuard.clearViolations();
+                base.evaluate();
+                List<Throwable> violations = MainThreadGuard.getViolations();
+                if (!violations.isEmpty()) {
+                    StringWriter report = new StringWriter();
+                    PrintWriter writer = new PrintWriter(report);
+                    writer.println(violations.size() + " main thread violation(s):");
+                    for (Throwable violation : violations) {
+                        violation.printStackTrace(writer);
+                    }
+                    writer.flush();
+                    fail(report.toString());
+                }
+            }
+        };
+    }
+}
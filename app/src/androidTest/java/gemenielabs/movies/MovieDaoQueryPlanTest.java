@@ -0,0 +1,93 @@
+package gemenielabs.movies;
+
+import android.content.Context;
+
+import androidx.room.Room;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.sqlite.db.framework.FrameworkSQLiteOpenHelperFactory;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+
+import gemenielabs.movies.Database.MovieDao;
+import gemenielabs.movies.Database.MovieDatabase;
+import gemenielabs.movies.Database.MovieDetails;
+import gemenielabs.movies.Database.QueryTracer;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs the queries behind the grid and details screens through a traced database and checks
+ * that none of the SQL Room actually issued plans a full table scan.
+ */
+@RunWith(AndroidJUnit4.class)
+public class MovieDaoQueryPlanTest {
+
+    private final QueryTracer tracer = new QueryTracer();
+    private MovieDatabase database;
+    private MovieDao movieDao;
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        database = Room.inMemoryDatabaseBuilder(context, MovieDatabase.class)
+                .openHelperFactory(tracer.wrap(new FrameworkSQLiteOpenHelperFactory()))
+                .build();
+        movieDao = database.movieDao();
+        for (int i = 1; i <= 50; i++) {
+            movieDao.insertAll(new MovieDetails(i % 7 == 0, i % 2 == 0, i % 2 == 1, i, 100, i, "Title " + i,
+                    "Overview", 7, "2020-01-01", "/poster" + i + ".jpg", "en"));
+        }
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+    }
+
+    @Test
+    public void hotQueriesUseIndexes() {
+        tracer.reset();
+        movieDao.loadPopular();
+        movieDao.loadTopRated();
+        movieDao.loadFavorites();
+        movieDao.loadCatalogue();
+        movieDao.loadTopIds(20);
+        movieDao.loadMovieID(3);
+        movieDao.loadMovieIDs(Arrays.asList(1, 2, 3));
+        movieDao.getVideosDetails(3);
+        movieDao.getReviewDetails(3);
+        movieDao.loadMovieWithDetails(3);
+
+        SupportSQLiteDatabase db = database.getOpenHelper().getReadableDatabase();
+        int checked = 0;
+        for (QueryTracer.Stats stats : tracer.snapshot()) {
+            // Room's own bookkeeping tables are tiny and not ours to index
+            if (stats.sql.contains("room_")) {
+                continue;
+            }
+            QueryPlanAssert.assertNoScan(db, stats.sql);
+            checked++;
+        }
+        assertTrue(checked >= 9);
+    }
+
+    @Test
+    public void perRowReadsAreFlagged() {
+        tracer.reset();
+        for (int i = 1; i <= 20; i++) {
+            movieDao.loadMovieID(i);
+        }
+        boolean flagged = false;
+        for (QueryTracer.Stats stats : tracer.snapshot()) {
+            flagged |= stats.suspectedNPlusOne && stats.sql.contains("movie_details");
+        }
+        assertTrue(flagged);
+    }
+}
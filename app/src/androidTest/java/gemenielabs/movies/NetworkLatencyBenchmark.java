@@ -0,0 +1,149 @@
+package gemenielabs.movies;
+
+import android.content.Context;
+import android.os.Bundle;
+import android.os.SystemClock;
+
+import androidx.room.Room;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import gemenielabs.movies.Database.MovieDao;
+import gemenielabs.movies.Database.MovieDatabase;
+import gemenielabs.movies.Database.MovieDetails;
+
+import static org.junit.Assert.assertFalse;
+
+/**
+ * Times the real GetWebData + MovieDao pipeline against {@link FakeTmdbServer} under several
+ * network profiles, starting from an empty in-memory database each iteration.
+ *
+ * Two timings are taken per iteration:
+ * - discover: both discover feeds fetched and ingested, what the grid waits for on a cold start;
+ * - details: trailers (with their YouTube lookups) and the first review page fetched in
+ *   parallel, as LiveDataDetailsModel does.
+ *
+ * Percentiles are reported as instrumentation status, e.g. slow_3g_discover_p90_ms, along with
+ * each profile's request, error and 429 counts.
+ */
+@RunWith(AndroidJUnit4.class)
+public class NetworkLatencyBenchmark {
+
+    private static final int ITERATIONS = 20;
+    private static final String KEY = "test";
+
+    private static final FakeTmdbServer.Profile BROADBAND = new FakeTmdbServer.Profile("broadband", 20, 10, 0f, 0f);
+    private static final FakeTmdbServer.Profile SLOW_3G = new FakeTmdbServer.Profile("slow_3g", 400, 200, 0f, 0f);
+    private static final FakeTmdbServer.Profile FLAKY = new FakeTmdbServer.Profile("flaky", 150, 100, 0.1f, 0.05f);
+
+    private FakeTmdbServer server;
+    private MovieDatabase database;
+    private MovieDao movieDao;
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    @Before
+    public void setUp() throws Exception {
+        Context testContext = InstrumentationRegistry.getInstrumentation().getContext();
+        server = new FakeTmdbServer(testContext.getAssets(), BROADBAND);
+        server.start();
+        GetWebData.setApiRoots(server.movieDbRoot(), server.youtubeRoot());
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        database = Room.inMemoryDatabaseBuilder(context, MovieDatabase.class).build();
+        movieDao = database.movieDao();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        GetWebData.setApiRoots(null, null);
+        executor.shutdownNow();
+        database.close();
+        server.shutdown();
+    }
+
+    @Test
+    public void broadband() throws Exception {
+        Bundle results = run(BROADBAND);
+        // With no injected failures the pipeline must actually ingest something
+        assertFalse(movieDao.loadPopular().isEmpty());
+        report(results);
+    }
+
+    @Test
+    public void slow3g() throws Exception {
+        report(run(SLOW_3G));
+    }
+
+    @Test
+    public void flaky() throws Exception {
+        report(run(FLAKY));
+    }
+
+    private Bundle run(FakeTmdbServer.Profile profile) throws Exception {
+        server.setProfile(profile);
+        int requestsBefore = server.requestCount();
+        int errorsBefore = server.errorCount();
+        int throttledBefore = server.throttledCount();
+        long[] discover = new long[ITERATIONS];
+        long[] details = new long[ITERATIONS];
+
+        for (int i = 0; i < ITERATIONS; i++) {
+            database.clearAllTables();
+            LoadScope scope = new LoadScope();
+            try {
+                final GetWebData getWebData = new GetWebData(scope, movieDao);
+
+                long start = SystemClock.elapsedRealtime();
+                List<MovieDetails> ingested = getWebData.getMovieDetails(KEY).ingested;
+                discover[i] = SystemClock.elapsedRealtime() - start;
+
+                final int id = ingested.isEmpty() ? 100000 : ingested.get(0).getId();
+                start = SystemClock.elapsedRealtime();
+                Future<?> videos = executor.submit(() -> getWebData.getVideoDetails(KEY, KEY, id));
+                Future<?> reviews = executor.submit(() -> getWebData.getReviewPage(KEY, id, 1));
+                videos.get();
+                reviews.get();
+                details[i] = SystemClock.elapsedRealtime() - start;
+            } finally {
+                scope.close();
+            }
+        }
+
+        Bundle results = new Bundle();
+        putPercentiles(results, profile.name + "_discover", discover);
+        putPercentiles(results, profile.name + "_details", details);
+        results.putInt(profile.name + "_requests", server.requestCount() - requestsBefore);
+        results.putInt(profile.name + "_errors", server.errorCount() - errorsBefore);
+        results.putInt(profile.name + "_throttled", server.throttledCount() - throttledBefore);
+        return results;
+    }
+
+    private static void putPercentiles(Bundle results, String name, long[] timings) {
+        long[] sorted = timings.clone();
+        Arrays.sort(sorted);
+        results.putLong(name + "_p50_ms", percentile(sorted, 50));
+        results.putLong(name + "_p90_ms", percentile(sorted, 90));
+        results.putLong(name + "_p99_ms", percentile(sorted, 99));
+        results.putLong(name + "_max_ms", sorted[sorted.length - 1]);
+    }
+
+    // Nearest-rank percentile of sorted timings
+    private static long percentile(long[] sorted, int percent) {
+        int rank = (int) Math.ceil(percent / 100.0 * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+    }
+
+    private static void report(Bundle results) {
+        InstrumentationRegistry.getInstrumentation().sendStatus(0, results);
+    }
+}
@@ -0,0 +1,168 @@
+package gemenielabs.movies;
+
+import android.graphics.Color;
+import android.graphics.drawable.ColorDrawable;
+import android.os.Bundle;
+import android.os.Debug;
+import android.os.SystemClock;
+import android.widget.ImageView;
+
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.test.core.app.ActivityScenario;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.squareup.picasso.Picasso;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Counts objects allocated on the main thread while the poster grid rebinds its tiles.
+ *
+ * A rebind to the same movie, as when a diff (e.g. a favorite change) touches rows already on
+ * screen, skips the poster request and must allocate nothing. A rebind to another movie, as when
+ * scrolling recycles a tile, issues a Picasso request. The same requests are first made straight
+ * through Picasso as a baseline, and the adapter may add at most
+ * {@link #MAX_ADAPTER_ALLOCATIONS_PER_BIND} objects per bind on top of them.
+ *
+ * Results are reported as instrumentation status (same_bind_count, same_bind_allocations,
+ * other_bind_count, other_bind_allocations, picasso_bind_count, picasso_bind_allocations).
+ */
+@RunWith(AndroidJUnit4.class)
+public class PosterBindBenchmark {
+
+    private static final int PASSES = 200;
+    // Slack for allocation counting noise; every display value is precomputed in MovieItem
+    private static final int MAX_ADAPTER_ALLOCATIONS_PER_BIND = 1;
+
+    @Rule
+    public final MainThreadGuardRule mainThreadGuard = new MainThreadGuardRule();
+
+    @Rule
+    public final CachedCatalogueRule cachedCatalogue = new CachedCatalogueRule();
+
+    @Test
+    public void rebindSameMovieAllocatesNothing() {
+        long[] allocations = new long[1];
+        int[] binds = new int[1];
+        try (ActivityScenario<MainActivity> scenario = ActivityScenario.launch(MainActivity.class)) {
+            CachedCatalogueRule.waitForTiles(scenario, SystemClock.elapsedRealtime());
+            scenario.onActivity(activity -> {
+                RecyclerView grid = activity.posterList;
+                showPlaceholders(grid);
+                // One untimed pass for class loading and JIT
+                bindAll(grid, 0);
+
+                Debug.startAllocCounting();
+                Debug.resetThreadAllocCount();
+                for (int pass = 0; pass < PASSES; pass++) {
+                    binds[0] += bindAll(grid, 0);
+                }
+                allocations[0] = Debug.getThreadAllocCount();
+                Debug.stopAllocCounting();
+            });
+        }
+
+        report("same", binds[0], allocations[0]);
+        assertEquals("Objects allocated over " + binds[0] + " binds", 0, allocations[0]);
+    }
+
+    @Test
+    public void rebindOtherMovieAllocatesOnlyPicassoRequests() {
+        long[] allocations = new long[2];
+        int[] binds = new int[2];
+        try (ActivityScenario<MainActivity> scenario = ActivityScenario.launch(MainActivity.class)) {
+            CachedCatalogueRule.waitForTiles(scenario, SystemClock.elapsedRealtime());
+            scenario.onActivity(activity -> {
+                RecyclerView grid = activity.posterList;
+                PosterSize posterSize = PosterSize.forGrid(activity);
+                String[] urls = new String[grid.getAdapter().getItemCount()];
+                for (int i = 0; i < urls.length; i++) {
+                    urls[i] = posterSize.url("/poster" + (i + 1) + ".jpg");
+                }
+                Object tag = new Object();
+                showPlaceholders(grid);
+                // Untimed passes for class loading and JIT
+                requestAll(grid, posterSize, tag, urls, 1);
+                bindAll(grid, 1);
+
+                // Baseline: the same number of requests for other posters, made directly
+                Debug.startAllocCounting();
+                Debug.resetThreadAllocCount();
+                for (int pass = 0; pass < PASSES; pass++) {
+                    binds[0] += requestAll(grid, posterSize, tag, urls, pass + 2);
+                }
+                allocations[0] = Debug.getThreadAllocCount();
+                Debug.stopAllocCounting();
+
+                // Each pass shifts every tile to a movie it isn't showing
+                Debug.startAllocCounting();
+                Debug.resetThreadAllocCount();
+                for (int pass = 0; pass < PASSES; pass++) {
+                    binds[1] += bindAll(grid, pass + 2);
+                }
+                allocations[1] = Debug.getThreadAllocCount();
+                Debug.stopAllocCounting();
+            });
+        }
+
+        report("picasso", binds[0], allocations[0]);
+        report("other", binds[1], allocations[1]);
+        long adapterAllocations = allocations[1] - allocations[0];
+        assertTrue("Adapter allocated " + adapterAllocations + " objects over " + binds[1]
+                        + " binds on top of Picasso's " + allocations[0],
+                adapterAllocations <= (long) binds[1] * MAX_ADAPTER_ALLOCATIONS_PER_BIND);
+    }
+
+    // Request a poster into every tile on screen as the adapter would, without the adapter
+    private static int requestAll(RecyclerView grid, PosterSize posterSize, Object tag, String[] urls, int offset) {
+        int count = grid.getChildCount();
+        for (int i = 0; i < count; i++) {
+            RecyclerView.ViewHolder holder = grid.getChildViewHolder(grid.getChildAt(i));
+            ImageView poster = holder.itemView.findViewById(R.id.poster_view);
+            posterSize.loadUrl(urls[(holder.getAdapterPosition() + offset) % urls.length])
+                    .tag(tag)
+                    .priority(Picasso.Priority.NORMAL)
+                    .into(poster);
+        }
+        return count;
+    }
+
+    // Stand in for delivered posters, so the numbers don't depend on the network
+    private static void showPlaceholders(RecyclerView grid) {
+        for (int i = 0; i < grid.getChildCount(); i++) {
+            ImageView poster = grid.getChildAt(i).findViewById(R.id.poster_view);
+            Picasso.get().cancelRequest(poster);
+            poster.setImageDrawable(new ColorDrawable(Color.GRAY));
+        }
+    }
+
+    /**
+     * Bind every tile on screen to the item offset places from its own, wrapping around the list.
+     *
+     * @return How many tiles were bound.
+     */
+    @SuppressWarnings("unchecked")
+    private static int bindAll(RecyclerView grid, int offset) {
+        RecyclerView.Adapter adapter = grid.getAdapter();
+        int itemCount = adapter.getItemCount();
+        int count = grid.getChildCount();
+        for (int i = 0; i < count; i++) {
+            RecyclerView.ViewHolder holder = grid.getChildViewHolder(grid.getChildAt(i));
+            adapter.onBindViewHolder(holder, (holder.getAdapterPosition() + offset) % itemCount);
+        }
+        return count;
+    }
+
+    private static void report(String kind, int binds, long allocations) {
+        Bundle results = new Bundle();
+        results.putInt(kind + "_bind_count", binds);
+        results.putLong(kind + "_bind_allocations", allocations);
+        InstrumentationRegistry.getInstrumentation().sendStatus(0, results);
+    }
+}
@@ -0,0 +1,43 @@
+package gemenielabs.movies;
+
+import android.database.Cursor;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.fail;
+
+/**
+ * Fails a test when a query's plan reads a whole table.
+ *
+ * Runs EXPLAIN QUERY PLAN on the statement (unbound parameters plan as NULL, which doesn't
+ * change index choice) and rejects any step that is a SCAN, covering-index scans included.
+ */
+public final class QueryPlanAssert {
+
+    private QueryPlanAssert() {
+    }
+
+    public static void assertNoScan(SupportSQLiteDatabase db, String sql) {
+        List<String> plan = explain(db, sql);
+        for (String step : plan) {
+            if (step.startsWith("SCAN")) {
+                fail("Full scan in query plan " + plan + " for: " + sql);
+            }
+        }
+    }
+
+    // The detail column of each plan step
+    public static List<String> explain(SupportSQLiteDatabase db, String sql) {
+        List<String> steps = new ArrayList<>();
+        try (Cursor cursor = db.query("EXPLAIN QUERY PLAN " + sql)) {
+            int detail = cursor.getColumnIndexOrThrow("detail");
+            while (cursor.moveToNext()) {
+                steps.add(cursor.getString(detail));
+            }
+        }
+        return steps;
+    }
+}
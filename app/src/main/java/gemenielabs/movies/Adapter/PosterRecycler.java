@@ -1,31 +1,188 @@
 package gemenielabs.movies.Adapter;
 
-import android.util.Log;
+import android.text.TextUtils;
 import android.view.LayoutInflater;
+import android.view.MotionEvent;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.ImageView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.AsyncListDiffer;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.squareup.picasso.Picasso;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import gemenielabs.movies.Database.MovieDetails;
-import gemenielabs.movies.MainActivity;
+import gemenielabs.movies.DetailsPrefetcher;
+import gemenielabs.movies.MainThreadGuard;
+import gemenielabs.movies.MovieItem;
+import gemenielabs.movies.PosterPrefetcher;
+import gemenielabs.movies.PosterSize;
 import gemenielabs.movies.R;
 
 public class PosterRecycler extends RecyclerView.Adapter<PosterRecycler.PosterVH> {
 
-    private List<MovieDetails> mList;
+    private static final String TAG = "PosterRecycler";
+    private static final int NO_PRESS = -1;
+
+    // Rows are matched by id so a background refresh only rebinds posters that actually changed
+    private static final DiffUtil.ItemCallback<MovieItem> DIFF_CALLBACK = new DiffUtil.ItemCallback<MovieItem>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull MovieItem oldItem, @NonNull MovieItem newItem) {
+            return oldItem.movie.getId() == newItem.movie.getId();
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull MovieItem oldItem, @NonNull MovieItem newItem) {
+            return oldItem.movie.isFavorite() == newItem.movie.isFavorite()
+                    && TextUtils.equals(oldItem.posterUrl, newItem.posterUrl);
+        }
+    };
+
+    private final AsyncListDiffer<MovieItem> mDiffer = new AsyncListDiffer<>(this, DIFF_CALLBACK);
     private final vHClickListener mVHClickListener;
+    // Groups this grid's Picasso requests so they can be paused, resumed and cancelled together
+    private final Object mRequestTag = new Object();
+    // Adapter positions currently on screen, used to prioritise loads
+    private int mFirstVisible = 0;
+    private int mLastVisible = -1;
+    private PosterPrefetcher mPrefetcher;
+    private PosterSize mPosterSize;
+    private DetailsPrefetcher mDetailsPrefetcher;
+    // Movie whose tile is being pressed, or NO_PRESS
+    private int mPressedId = NO_PRESS;
+
+    private final RecyclerView.OnScrollListener mScrollListener = new RecyclerView.OnScrollListener() {
+        @Override
+        public void onScrollStateChanged(@NonNull RecyclerView recyclerView, int newState) {
+            // The press was the start of a drag, not a tap
+            if (newState == RecyclerView.SCROLL_STATE_DRAGGING) {
+                abandonPress();
+            }
+            // Flung posters fly past too fast to be seen, so don't spend bandwidth or decode time on them
+            if (newState == RecyclerView.SCROLL_STATE_SETTLING) {
+                Picasso.get().pauseTag(mRequestTag);
+                mPrefetcher.pause();
+            } else {
+                Picasso.get().resumeTag(mRequestTag);
+                mPrefetcher.resume();
+            }
+        }
+
+        @Override
+        public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+            int first = mFirstVisible;
+            int last = mLastVisible;
+            updateViewport(recyclerView);
+            if (dy != 0 && (first != mFirstVisible || last != mLastVisible)) {
+                prefetchAhead(dy > 0);
+            }
+        }
+    };
+
+    // Start loading a tile's details screen on touch-down, ahead of the click
+    private final RecyclerView.OnItemTouchListener mTouchListener = new RecyclerView.SimpleOnItemTouchListener() {
+        @Override
+        public boolean onInterceptTouchEvent(@NonNull RecyclerView recyclerView, @NonNull MotionEvent e) {
+            switch (e.getActionMasked()) {
+                case MotionEvent.ACTION_DOWN:
+                    int position = positionUnder(recyclerView, e);
+                    if (position != RecyclerView.NO_POSITION) {
+                        MovieDetails movieDetails = mDiffer.getCurrentList().get(position).movie;
+                        mPressedId = movieDetails.getId();
+                        mDetailsPrefetcher.prefetch(movieDetails);
+                    }
+                    break;
+                case MotionEvent.ACTION_UP:
+                    // Lifted on the pressed tile, the click opens the details screen, which takes the prefetch
+                    int released = positionUnder(recyclerView, e);
+                    if (released == RecyclerView.NO_POSITION
+                            || mDiffer.getCurrentList().get(released).movie.getId() != mPressedId) {
+                        abandonPress();
+                    }
+                    mPressedId = NO_PRESS;
+                    break;
+                case MotionEvent.ACTION_CANCEL:
+                    abandonPress();
+                    break;
+            }
+            return false;
+        }
+    };
 
     public PosterRecycler(vHClickListener listener) {
         mVHClickListener = listener;
     }
 
+    @Override
+    public void onAttachedToRecyclerView(@NonNull RecyclerView recyclerView) {
+        mPrefetcher = PosterPrefetcher.getInstance(recyclerView.getContext());
+        mPosterSize = PosterSize.forGrid(recyclerView.getContext());
+        mDetailsPrefetcher = DetailsPrefetcher.getInstance(recyclerView.getContext());
+        recyclerView.addOnScrollListener(mScrollListener);
+        recyclerView.addOnItemTouchListener(mTouchListener);
+    }
+
+    @Override
+    public void onDetachedFromRecyclerView(@NonNull RecyclerView recyclerView) {
+        recyclerView.removeOnScrollListener(mScrollListener);
+        recyclerView.removeOnItemTouchListener(mTouchListener);
+        abandonPress();
+        Picasso.get().cancelTag(mRequestTag);
+    }
+
+    private static int positionUnder(RecyclerView recyclerView, MotionEvent e) {
+        View child = recyclerView.findChildViewUnder(e.getX(), e.getY());
+        return child == null ? RecyclerView.NO_POSITION : recyclerView.getChildAdapterPosition(child);
+    }
+
+    // Cancel the pressed tile's prefetch; the press won't become a click
+    private void abandonPress() {
+        if (mPressedId != NO_PRESS) {
+            mDetailsPrefetcher.cancel(mPressedId);
+            mPressedId = NO_PRESS;
+        }
+    }
+
+    private void updateViewport(RecyclerView recyclerView) {
+        int childCount = recyclerView.getChildCount();
+        if (childCount == 0) {
+            return;
+        }
+        mFirstVisible = recyclerView.getChildAdapterPosition(recyclerView.getChildAt(0));
+        mLastVisible = recyclerView.getChildAdapterPosition(recyclerView.getChildAt(childCount - 1));
+    }
+
+    // Warm the next screenful of posters in the scroll direction, nearest first
+    private void prefetchAhead(boolean forward) {
+        List<MovieItem> list = mDiffer.getCurrentList();
+        int visible = Math.max(mLastVisible - mFirstVisible + 1, 1);
+        List<String> posterPaths = new ArrayList<>(visible);
+        for (int i = 1; i <= visible; i++) {
+            int position = forward ? mLastVisible + i : mFirstVisible - i;
+            if (position < 0 || position >= list.size()) {
+                break;
+            }
+            posterPaths.add(list.get(position).movie.getPosterPath());
+        }
+        mPrefetcher.prefetch(posterPaths, mPosterSize);
+    }
+
+    // On-screen tiles first, the next screenful next, anything further out last
+    private Picasso.Priority priorityFor(int position) {
+        int visible = Math.max(mLastVisible - mFirstVisible + 1, 1);
+        if (position >= mFirstVisible && position <= mLastVisible) {
+            return Picasso.Priority.HIGH;
+        }
+        int distance = position < mFirstVisible ? mFirstVisible - position : position - mLastVisible;
+        return distance <= visible ? Picasso.Priority.NORMAL : Picasso.Priority.LOW;
+    }
+
     @NonNull
     @Override
     public PosterRecycler.PosterVH onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
@@ -33,34 +190,57 @@ public class PosterRecycler extends RecyclerView.Adapter<PosterRecycler.PosterVH
         return new PosterVH(view);
     }
 
+    // Everything shown is precomputed in the MovieItem, so binding allocates nothing of its own
     @Override
     public void onBindViewHolder(@NonNull PosterRecycler.PosterVH holder, int position) {
-        MovieDetails movieDetails = mList.get(position);
-        String imageUri = MainActivity.MOVIE_DB_IMAGE_BASE + MainActivity.IMAGE_SIZE + movieDetails.getPosterPath();
-        Log.i("TAG onBind", imageUri);
-        Picasso.get().load(imageUri).into(holder.posterImage);
+        long start = System.nanoTime();
+        MovieItem movieItem = mDiffer.getCurrentList().get(position);
+        // A tile already showing this poster (e.g. rebound for a favorite change) needs no new request
+        if (!movieItem.posterUrl.equals(holder.posterUrl) || holder.posterImage.getDrawable() == null) {
+            holder.posterUrl = movieItem.posterUrl;
+            mPosterSize.loadUrl(movieItem.posterUrl)
+                    .tag(mRequestTag)
+                    .priority(priorityFor(position))
+                    .into(holder.posterImage);
+        }
+        MainThreadGuard.checkBind(TAG, start);
+    }
+
+    @Override
+    public void onViewRecycled(@NonNull PosterRecycler.PosterVH holder) {
+        // The holder is off screen now; don't let its poster keep downloading
+        Picasso.get().cancelRequest(holder.posterImage);
+        holder.posterUrl = null;
     }
 
-    public void setList(List<MovieDetails> list){
-        mList = list;
-        notifyDataSetChanged();
+    public void setList(List<MovieItem> list){
+        setList(list, null);
+    }
+
+    /**
+     * Diff the new list against the current one off the main thread and apply only the changes.
+     *
+     * @param list           The new poster list.
+     * @param commitCallback Run once the list is applied, may be null.
+     */
+    public void setList(List<MovieItem> list, Runnable commitCallback){
+        mDiffer.submitList(list, commitCallback);
     }
 
     @Override
     public int getItemCount() {
-        if(mList == null){
-            return 0;
-        }
-        return mList.size();
+        return mDiffer.getCurrentList().size();
     }
 
     public interface vHClickListener{
-        void onPosterClicked(int Id, boolean x, View v);
+        void onPosterClicked(MovieItem movieItem, View v);
     }
 
     class PosterVH extends RecyclerView.ViewHolder implements View.OnClickListener {
 
         public ImageView posterImage;
+        // URL of the poster last requested into posterImage
+        String posterUrl;
 
         public PosterVH(View itemView) {
             super(itemView);
@@ -71,8 +251,11 @@ public class PosterRecycler extends RecyclerView.Adapter<PosterRecycler.PosterVH
 
         @Override
         public void onClick(View v) {
-            mVHClickListener.onPosterClicked(mList.get(getAdapterPosition()).getId(),
-                    mList.get(getAdapterPosition()).isFavorite(), posterImage);
+            int position = getAdapterPosition();
+            if (position == RecyclerView.NO_POSITION) {
+                return;
+            }
+            mVHClickListener.onPosterClicked(mDiffer.getCurrentList().get(position), posterImage);
         }
     }
 }
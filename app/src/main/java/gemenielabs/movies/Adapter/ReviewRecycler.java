@@ -10,12 +10,15 @@ import android.widget.TextView;
 
 import java.util.List;
 
-import gemenielabs.movies.Database.ReviewDetails;
+import gemenielabs.movies.MainThreadGuard;
 import gemenielabs.movies.R;
+import gemenielabs.movies.ReviewItem;
 
 public class ReviewRecycler extends RecyclerView.Adapter<ReviewRecycler.ReviewVH> {
 
-    private List<ReviewDetails> rList;
+    private static final String TAG = "ReviewRecycler";
+
+    private List<ReviewItem> rList;
 
     @NonNull
     @Override
@@ -24,16 +27,24 @@ public class ReviewRecycler extends RecyclerView.Adapter<ReviewRecycler.ReviewVH
         return new ReviewRecycler.ReviewVH(view);
     }
 
+    // Text is precomputed, so binding only picks the preview or the full review
     @Override
     public void onBindViewHolder(@NonNull ReviewRecycler.ReviewVH holder, int position) {
-            ReviewDetails reviewDetails = rList.get(position);
-            String review = reviewDetails.getContent() + "\n\n" + reviewDetails.getAuthor();
-            holder.review.setText(review);
+            long start = System.nanoTime();
+            ReviewItem reviewItem = rList.get(position);
+            holder.review.setText(reviewItem.text());
+            holder.itemView.setClickable(reviewItem.expandable);
+            MainThreadGuard.checkBind(TAG, start);
     }
 
-    public void setReviewDetails(List<ReviewDetails> list){
-        if(!list.isEmpty()) {
-            rList = list;
+    // New pages only ever add to the end, so only the added rows are laid out
+    public void setReviews(List<ReviewItem> list) {
+        int previous = getItemCount();
+        rList = list;
+        if (list.size() >= previous) {
+            notifyItemRangeInserted(previous, list.size() - previous);
+        } else {
+            notifyDataSetChanged();
         }
     }
 
@@ -45,14 +56,28 @@ public class ReviewRecycler extends RecyclerView.Adapter<ReviewRecycler.ReviewVH
         return rList.size();
     }
 
-    class ReviewVH extends RecyclerView.ViewHolder {
+    class ReviewVH extends RecyclerView.ViewHolder implements View.OnClickListener {
 
         public TextView review;
 
         public ReviewVH(View itemView) {
             super(itemView);
             review = itemView.findViewById(R.id.review_text);
+            itemView.setOnClickListener(this);
+        }
 
+        // Expand or collapse the tapped review
+        @Override
+        public void onClick(View v) {
+            int position = getAdapterPosition();
+            if (position == RecyclerView.NO_POSITION) {
+                return;
+            }
+            ReviewItem reviewItem = rList.get(position);
+            if (reviewItem.expandable) {
+                reviewItem.expanded = !reviewItem.expanded;
+                notifyItemChanged(position);
+            }
         }
     }
 }
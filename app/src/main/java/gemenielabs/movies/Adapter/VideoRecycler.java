@@ -4,7 +4,6 @@ import android.content.Context;
 import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.RecyclerView;
 
-import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -15,10 +14,13 @@ import java.util.List;
 
 import gemenielabs.movies.Database.VideoDetails;
 import gemenielabs.movies.DetailsActivity;
+import gemenielabs.movies.MainThreadGuard;
 import gemenielabs.movies.R;
 
 public class VideoRecycler extends RecyclerView.Adapter<VideoRecycler.TrailerReviewVH> {
 
+    private static final String TAG = "VideoRecycler";
+
     private List<VideoDetails> mList;
     private final Context mContext;
     private final VideoRecycler.onListClickListener mOnListClickListener;
@@ -37,10 +39,15 @@ public class VideoRecycler extends RecyclerView.Adapter<VideoRecycler.TrailerRev
 
     @Override
     public void onBindViewHolder(@NonNull VideoRecycler.TrailerReviewVH holder, int position) {
+            long start = System.nanoTime();
             VideoDetails videoDetails = mList.get(position);
-            Log.i("TAG onBinD", String.valueOf(videoDetails.getImageURL()));
             Picasso.get().load(videoDetails.getImageURL()).into(holder.image);
             holder.image.setTag(DetailsActivity.TRAILER);
+            MainThreadGuard.checkBind(TAG, start);
+    }
+
+    public VideoDetails getItem(int position) {
+        return mList.get(position);
     }
 
     public void setVideoDetails(List<VideoDetails> list){
@@ -74,7 +81,6 @@ public class VideoRecycler extends RecyclerView.Adapter<VideoRecycler.TrailerRev
 
         @Override
         public void onClick(View v) {
-            Log.i("TAG Clicked", "TRAILER");
             mOnListClickListener.onTrailerClicked(getAdapterPosition(), v);
         }
     }
@@ -0,0 +1,67 @@
+package gemenielabs.movies;
+
+import android.util.Log;
+
+/**
+ * Logging for the app's own code.
+ *
+ * Verbose, debug and info output only exists in debug builds: the calls are gated on
+ * {@link BuildConfig#DEBUG} and R8 removes them from release builds (see proguard-rules.pro).
+ * Messages that need building take a {@link Message}, which is only evaluated when the line
+ * is actually written, so hot paths never concatenate strings for a disabled level.
+ * Warnings and errors are always logged.
+ */
+public final class AppLog {
+
+    // A log message built only if it is going to be written
+    public interface Message {
+        String build();
+    }
+
+    public static final boolean DEBUG = BuildConfig.DEBUG;
+
+    private AppLog() {
+    }
+
+    public static void v(String tag, Message message) {
+        if (DEBUG) {
+            Log.v(tag, message.build());
+        }
+    }
+
+    public static void d(String tag, String message) {
+        if (DEBUG) {
+            Log.d(tag, message);
+        }
+    }
+
+    public static void d(String tag, Message message) {
+        if (DEBUG) {
+            Log.d(tag, message.build());
+        }
+    }
+
+    public static void i(String tag, String message) {
+        if (DEBUG) {
+            Log.i(tag, message);
+        }
+    }
+
+    public static void i(String tag, Message message) {
+        if (DEBUG) {
+            Log.i(tag, message.build());
+        }
+    }
+
+    public static void w(String tag, String message) {
+        Log.w(tag, message);
+    }
+
+    public static void w(String tag, String message, Throwable throwable) {
+        Log.w(tag, message, throwable);
+    }
+
+    public static void e(String tag, String message, Throwable throwable) {
+        Log.e(tag, message, throwable);
+    }
+}
@@ -0,0 +1,119 @@
+package gemenielabs.movies;
+
+import android.util.SparseArray;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import gemenielabs.movies.Database.MovieDetails;
+
+/**
+ * An immutable in-memory copy of the rows behind the poster grid, ready for display and indexed
+ * by id and by category.
+ *
+ * The grid is composed from it for any combination of categories without touching the database,
+ * and a favorite change produces a new snapshot sharing the unchanged rows.
+ */
+public final class CatalogueSnapshot {
+
+    public static final CatalogueSnapshot EMPTY = new CatalogueSnapshot(new SparseArray<MovieItem>(),
+            Collections.<MovieItem>emptyList(), Collections.<MovieItem>emptyList(),
+            Collections.<MovieItem>emptyList());
+
+    private final SparseArray<MovieItem> mById;
+    private final List<MovieItem> mPopular;
+    private final List<MovieItem> mTopRated;
+    private final List<MovieItem> mFavorites;
+
+    private CatalogueSnapshot(SparseArray<MovieItem> byId, List<MovieItem> popular,
+                              List<MovieItem> topRated, List<MovieItem> favorites) {
+        mById = byId;
+        mPopular = popular;
+        mTopRated = topRated;
+        mFavorites = favorites;
+    }
+
+    // Format and index rows loaded from the database; each keeps its place within every category
+    public static CatalogueSnapshot of(List<MovieDetails> rows, MovieItem.Formatter formatter) {
+        SparseArray<MovieItem> byId = new SparseArray<>(rows.size());
+        List<MovieItem> popular = new ArrayList<>();
+        List<MovieItem> topRated = new ArrayList<>();
+        List<MovieItem> favorites = new ArrayList<>();
+        for (MovieDetails movie : rows) {
+            MovieItem item = formatter.format(movie);
+            byId.put(movie.getId(), item);
+            if (movie.isPopular()) {
+                popular.add(item);
+            }
+            if (movie.isToprated()) {
+                topRated.add(item);
+            }
+            if (movie.isFavorite()) {
+                favorites.add(item);
+            }
+        }
+        return new CatalogueSnapshot(byId, popular, topRated, favorites);
+    }
+
+    public MovieItem get(int id) {
+        return mById.get(id);
+    }
+
+    public int size() {
+        return mById.size();
+    }
+
+    /**
+     * The grid for the selected categories: popular, then top rated, then favorites. A movie in
+     * more than one selected category is listed in each.
+     */
+    public List<MovieItem> compose(boolean popular, boolean topRated, boolean favorites) {
+        List<MovieItem> list = new ArrayList<>((popular ? mPopular.size() : 0)
+                + (topRated ? mTopRated.size() : 0) + (favorites ? mFavorites.size() : 0));
+        if (popular) {
+            list.addAll(mPopular);
+        }
+        if (topRated) {
+            list.addAll(mTopRated);
+        }
+        if (favorites) {
+            list.addAll(mFavorites);
+        }
+        return list;
+    }
+
+    /**
+     * A snapshot with the movie's favorite flag changed. The row already held is preferred over
+     * the given one, which may lack the category flags; a newly favorited movie goes last.
+     */
+    public CatalogueSnapshot withFavorite(MovieDetails movie, MovieItem.Formatter formatter) {
+        MovieItem known = mById.get(movie.getId());
+        MovieItem changed = known == null ? formatter.format(movie) : known.withFavorite(movie.isFavorite());
+        int id = movie.getId();
+        SparseArray<MovieItem> byId = mById.clone();
+        byId.put(id, changed);
+        List<MovieItem> favorites = new ArrayList<>(mFavorites.size() + 1);
+        for (MovieItem favorite : mFavorites) {
+            if (favorite.movie.getId() != id) {
+                favorites.add(favorite);
+            }
+        }
+        if (changed.movie.isFavorite()) {
+            favorites.add(changed);
+        }
+        return new CatalogueSnapshot(byId, replace(mPopular, changed), replace(mTopRated, changed), favorites);
+    }
+
+    // The list with the row of the same id swapped for the changed one, or the list itself if absent
+    private static List<MovieItem> replace(List<MovieItem> movies, MovieItem changed) {
+        for (int i = 0; i < movies.size(); i++) {
+            if (movies.get(i).movie.getId() == changed.movie.getId()) {
+                List<MovieItem> replaced = new ArrayList<>(movies);
+                replaced.set(i, changed);
+                return replaced;
+            }
+        }
+        return movies;
+    }
+}
@@ -0,0 +1,169 @@
+package gemenielabs.movies;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import androidx.annotation.NonNull;
+import androidx.work.Constraints;
+import androidx.work.ExistingPeriodicWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.PeriodicWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+import gemenielabs.movies.Database.MovieDao;
+import gemenielabs.movies.Database.MovieDatabase;
+import gemenielabs.movies.Database.MovieDetails;
+
+/**
+ * Keeps the local catalogue current in the background.
+ *
+ * Uses TMDB's changes feeds to re-read only the rows that changed since the last sync (falling
+ * back to the discover pages when the last sync is older than the feed's window), then caches
+ * trailers and reviews for the top grid titles so their details screen is a local read.
+ * Finally prunes the catalogue to the {@link StorageBudget} and re-pins favorite posters.
+ */
+public class CatalogueSyncWorker extends Worker {
+
+    private static final String WORK_NAME = "catalogue_sync";
+    private static final String PREFS = "catalogue_sync";
+    private static final String LAST_SYNC = "last_sync";
+    private static final long SYNC_INTERVAL_HOURS = 12;
+    // The foreground refresh on launch is skipped while the last sync is younger than this
+    private static final long FRESH_MS = TimeUnit.HOURS.toMillis(6);
+    private static final int PREFETCH_TOP_N = 20;
+
+    private final LoadScope loadScope = new LoadScope();
+
+    public CatalogueSyncWorker(@NonNull Context context, @NonNull WorkerParameters workerParams) {
+        super(context, workerParams);
+    }
+
+    // Schedule the periodic sync, keeping an existing schedule if there is one
+    public static void schedule(Context context) {
+        Constraints constraints = new Constraints.Builder()
+                .setRequiredNetworkType(NetworkType.CONNECTED)
+                .setRequiresBatteryNotLow(true)
+                .build();
+        PeriodicWorkRequest request = new PeriodicWorkRequest.Builder(
+                CatalogueSyncWorker.class, SYNC_INTERVAL_HOURS, TimeUnit.HOURS)
+                .setConstraints(constraints)
+                .build();
+        WorkManager.getInstance(context)
+                .enqueueUniquePeriodicWork(WORK_NAME, ExistingPeriodicWorkPolicy.KEEP, request);
+    }
+
+    // Whether a sync (background or foreground) ran recently enough to skip refreshing on launch
+    public static boolean isFresh(Context context) {
+        return System.currentTimeMillis() - lastSync(context) < FRESH_MS;
+    }
+
+    public static void markSynced(Context context) {
+        prefs(context).edit().putLong(LAST_SYNC, System.currentTimeMillis()).apply();
+    }
+
+    private static long lastSync(Context context) {
+        return prefs(context).getLong(LAST_SYNC, 0);
+    }
+
+    private static SharedPreferences prefs(Context context) {
+        return context.getSharedPreferences(PREFS, Context.MODE_PRIVATE);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        // WorkManager saw a connection that hasn't validated; nothing would get through
+        if (GetWebData.isOffline()) {
+            return Result.retry();
+        }
+        Context context = getApplicationContext();
+        MovieDao movieDao = MovieDatabase.getInstance(context).movieDao();
+        GetWebData getWebData = new GetWebData(loadScope, movieDao);
+        String movieKey = context.getString(R.string.moviedb_api_key);
+
+        long lastSync = lastSync(context);
+        long age = System.currentTimeMillis() - lastSync;
+        if (lastSync == 0 || age >= TimeUnit.DAYS.toMillis(GetWebData.CHANGES_MAX_DAYS)) {
+            // Marking a partial refresh synced would move the next delta past rows never fetched
+            if (!getWebData.getMovieDetails(movieKey).complete) {
+                return Result.retry();
+            }
+        } else {
+            SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd", Locale.US);
+            format.setTimeZone(TimeZone.getTimeZone("UTC"));
+            String startDate = format.format(new Date(lastSync));
+            // Popular rows come from discover/movie and top rated rows from discover/tv
+            if (!refreshChanged(getWebData, movieKey, "movie", startDate, ids(movieDao, true))
+                    || !refreshChanged(getWebData, movieKey, "tv", startDate, ids(movieDao, false))) {
+                return Result.retry();
+            }
+        }
+        if (isStopped()) {
+            return Result.retry();
+        }
+
+        // Cache trailers and reviews for the titles most likely to be opened
+        String youtubeKey = context.getString(R.string.google_youtube_api_key);
+        for (int id : movieDao.loadTopIds(PREFETCH_TOP_N)) {
+            if (isStopped()) {
+                return Result.retry();
+            }
+            if (movieDao.getVideosDetails(id).isEmpty()) {
+                getWebData.getVideoDetails(movieKey, youtubeKey, id);
+            }
+            // Only the first page, unless it was already fetched; the details screen pages in the rest
+            if (movieDao.loadReviewProgress(id) == null && movieDao.getReviewDetails(id).isEmpty()) {
+                getWebData.getReviewPage(movieKey, id, 1);
+            }
+        }
+
+        // Keep the catalogue within its share of the storage budget and every favorite poster pinned
+        StorageBudget.get(context).enforce(movieDao);
+        ImageDiskCache.get().reconcile(movieDao.loadFavorites());
+
+        markSynced(context);
+        return Result.success();
+    }
+
+    private static Set<Integer> ids(MovieDao movieDao, boolean popular) {
+        Set<Integer> ids = new HashSet<>();
+        for (MovieDetails movieDetails : popular ? movieDao.loadPopular() : movieDao.loadTopRated()) {
+            ids.add(movieDetails.getId());
+        }
+        return ids;
+    }
+
+    // Refresh the local rows that appear in the changes feed; false if the feed or any row failed
+    private boolean refreshChanged(GetWebData getWebData, String key, String term, String startDate, Set<Integer> localIds) {
+        Set<Integer> changed = getWebData.getChangedIds(key, term, startDate);
+        if (changed == null) {
+            return false;
+        }
+        changed.retainAll(localIds);
+        for (int id : changed) {
+            if (isStopped()) {
+                return false;
+            }
+            // Syncing past a change never fetched would skip it for good
+            if (!getWebData.refreshMovieDetails(key, term, id)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void onStopped() {
+        loadScope.close();
+    }
+}
@@ -0,0 +1,187 @@
+package gemenielabs.movies;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.net.NetworkInfo;
+import android.net.NetworkRequest;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Tracks whether the device has a usable network, and holds refreshes wanted while it hasn't.
+ *
+ * {@link GetWebData} skips its calls while offline, so screens open from Room without waiting
+ * for socket timeouts. A screen that wanted fresh data instead {@link #defer defers} the refresh
+ * under a key; when a network comes back the deferred refreshes run on the main thread, most
+ * important first.
+ */
+public class ConnectivityMonitor {
+
+    private static final String TAG = "ConnectivityMonitor";
+
+    // Lower runs first: what's on screen, then what the screen is missing, then extras
+    public static final int PRIORITY_CATALOGUE = 0;
+    public static final int PRIORITY_DETAILS = 1;
+    public static final int PRIORITY_REVIEWS = 2;
+    public static final int PRIORITY_SEARCH = 3;
+
+    private static ConnectivityMonitor sInstance;
+
+    private static class Deferred implements Comparable<Deferred> {
+        final String key;
+        final int priority;
+        final long order;
+        final Runnable refresh;
+
+        Deferred(String key, int priority, long order, Runnable refresh) {
+            this.key = key;
+            this.priority = priority;
+            this.order = order;
+            this.refresh = refresh;
+        }
+
+        @Override
+        public int compareTo(Deferred other) {
+            if (priority != other.priority) {
+                return priority < other.priority ? -1 : 1;
+            }
+            return Long.compare(order, other.order);
+        }
+    }
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    // Connected networks with internet capability
+    private final Set<Network> mNetworks = new HashSet<>();
+    // Deferred refreshes by key, only touched on the main thread
+    private final Map<String, Deferred> mDeferred = new HashMap<>();
+    private volatile boolean mOnline;
+    private long mNextOrder;
+
+    private ConnectivityMonitor(Context context) {
+        ConnectivityManager connectivityManager =
+                (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        mOnline = isConnected(connectivityManager);
+        NetworkRequest request = new NetworkRequest.Builder()
+                .addCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)
+                .build();
+        // Every network this request matches can carry internet traffic. Validation is only a hint:
+        // some networks that work fine never validate, so an unvalidated one still counts
+        connectivityManager.registerNetworkCallback(request, new ConnectivityManager.NetworkCallback() {
+            @Override
+            public void onAvailable(@NonNull Network network) {
+                update(network, true);
+            }
+
+            @Override
+            public void onCapabilitiesChanged(@NonNull Network network, @NonNull NetworkCapabilities capabilities) {
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M
+                        && !capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_VALIDATED)) {
+                    AppLog.d(TAG, () -> network + " is not validated; requests may fail");
+                }
+                update(network, capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET));
+            }
+
+            @Override
+            public void onLost(@NonNull Network network) {
+                update(network, false);
+            }
+        });
+    }
+
+    // Whether the default network can reach the internet right now
+    @SuppressWarnings("deprecation")
+    private static boolean isConnected(ConnectivityManager connectivityManager) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            NetworkCapabilities capabilities =
+                    connectivityManager.getNetworkCapabilities(connectivityManager.getActiveNetwork());
+            return capabilities != null && capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET);
+        }
+        NetworkInfo activeNetwork = connectivityManager.getActiveNetworkInfo();
+        return activeNetwork != null && activeNetwork.isConnected();
+    }
+
+    /**
+     * Start tracking connectivity. Call once from Application.onCreate.
+     */
+    public static void install(Context context) {
+        sInstance = new ConnectivityMonitor(context.getApplicationContext());
+    }
+
+    public static ConnectivityMonitor get() {
+        return sInstance;
+    }
+
+    public boolean isOnline() {
+        return mOnline;
+    }
+
+    /**
+     * Run the refresh once the device is back online, or straight away if it already is. A later
+     * refresh under the same key replaces the earlier one. Call on the main thread.
+     *
+     * @param key      Identifies what is being refreshed, e.g. "videos:123".
+     * @param priority One of the PRIORITY_ constants; lower runs first.
+     */
+    public void defer(String key, int priority, Runnable refresh) {
+        if (mOnline) {
+            refresh.run();
+            return;
+        }
+        mDeferred.put(key, new Deferred(key, priority, mNextOrder++, refresh));
+        AppLog.d(TAG, () -> "Deferred " + key + ", " + mDeferred.size() + " waiting");
+    }
+
+    // Drop a deferred refresh, e.g. when the screen that wanted it goes away. Call on the main thread
+    public void cancel(String key) {
+        mDeferred.remove(key);
+    }
+
+    // Called on the ConnectivityManager's thread
+    private void update(Network network, boolean usable) {
+        boolean online;
+        synchronized (mNetworks) {
+            if (usable) {
+                mNetworks.add(network);
+            } else {
+                mNetworks.remove(network);
+            }
+            online = !mNetworks.isEmpty();
+        }
+        if (online == mOnline) {
+            return;
+        }
+        mOnline = online;
+        AppLog.i(TAG, online ? "Online" : "Offline");
+        if (online) {
+            mMainHandler.post(this::replay);
+        }
+    }
+
+    private void replay() {
+        if (!mOnline || mDeferred.isEmpty()) {
+            return;
+        }
+        PriorityQueue<Deferred> queue = new PriorityQueue<>(mDeferred.values());
+        mDeferred.clear();
+        List<String> replayed = new ArrayList<>(queue.size());
+        while (!queue.isEmpty()) {
+            Deferred deferred = queue.poll();
+            replayed.add(deferred.key);
+            deferred.refresh.run();
+        }
+        AppLog.d(TAG, () -> "Replayed " + replayed);
+    }
+}
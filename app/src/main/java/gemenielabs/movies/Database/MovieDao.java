@@ -5,7 +5,11 @@ import androidx.room.Delete;
 import androidx.room.Insert;
 import androidx.room.Query;
 import androidx.room.OnConflictStrategy;
+import androidx.room.Transaction;
+
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 
 @Dao
@@ -14,9 +18,44 @@ public interface MovieDao {
     @Insert(onConflict = OnConflictStrategy.REPLACE)
     void insertAll(MovieDetails movieDetails);
 
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void insertAll(List<MovieDetails> movieDetails);
+
+    @Query("SELECT id FROM movie_details WHERE favorite = 1")
+    List<Integer> loadFavoriteIds();
+
+    /**
+     * Store rows fetched from TMDB, taking each one's favorite flag from the database in the same
+     * transaction. A favorite toggled while the fetch ran is then kept instead of being replaced
+     * by the flag read before it. The given rows are updated to match.
+     */
+    @Transaction
+    default void insertKeepingFavorites(List<MovieDetails> movieDetails) {
+        Set<Integer> favorites = new HashSet<>(loadFavoriteIds());
+        for (MovieDetails movie : movieDetails) {
+            movie.setFavorite(favorites.contains(movie.getId()));
+        }
+        insertAll(movieDetails);
+    }
+
     @Query("SELECT * FROM movie_details WHERE id = :id")
     MovieDetails loadMovieID(int id);
 
+    @Query("SELECT * FROM movie_details WHERE id IN (:ids)")
+    List<MovieDetails> loadMovieIDs(List<Integer> ids);
+
+    // Local title matches for search, most popular first; :pattern is a LIKE pattern escaped with '\'
+    @Query("SELECT * FROM movie_details WHERE title LIKE :pattern ESCAPE '\\' ORDER BY popularity DESC LIMIT :limit")
+    List<MovieDetails> searchTitles(String pattern, int limit);
+
+    // Flip one flag in place; returns the number of rows changed
+    @Query("UPDATE movie_details SET favorite = :favorite WHERE id = :id")
+    int setFavorite(int id, boolean favorite);
+
+    // Every row the grid can show, whichever categories are selected
+    @Query("SELECT * FROM movie_details WHERE popular = 1 OR toprated = 1 OR favorite = 1")
+    List<MovieDetails> loadCatalogue();
+
     @Query("SELECT * FROM movie_details WHERE favorite = 1")
     List<MovieDetails> loadFavorites();
 
@@ -26,6 +65,26 @@ public interface MovieDao {
     @Query("SELECT * FROM movie_details WHERE toprated = 1")
     List<MovieDetails> loadTopRated();
 
+    @Query("SELECT id FROM movie_details WHERE popular = 1 OR toprated = 1 ORDER BY popularity DESC LIMIT :limit")
+    List<Integer> loadTopIds(int limit);
+
+    @Query("SELECT COUNT(*) FROM movie_details")
+    int countMovies();
+
+    // Remove up to :count non-favorite rows, those off both grids first, then the least popular
+    @Query("DELETE FROM movie_details WHERE id IN (SELECT id FROM movie_details WHERE favorite = 0 "
+            + "ORDER BY popular + toprated ASC, popularity ASC LIMIT :count)")
+    int pruneMovies(int count);
+
+    @Query("DELETE FROM video_details WHERE id NOT IN (SELECT id FROM movie_details)")
+    void pruneOrphanVideos();
+
+    @Query("DELETE FROM review_details WHERE id NOT IN (SELECT id FROM movie_details)")
+    void pruneOrphanReviews();
+
+    @Query("DELETE FROM review_progress WHERE id NOT IN (SELECT id FROM movie_details)")
+    void pruneOrphanReviewProgress();
+
     @Delete
     void delete(MovieDetails movieDetails);
 
@@ -38,13 +97,24 @@ public interface MovieDao {
     @Insert(onConflict = OnConflictStrategy.REPLACE)
     void insertReviewDetails(ReviewDetails reviewDetails);
 
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void insertReviewDetails(List<ReviewDetails> reviewDetails);
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void insertReviewProgress(ReviewProgress reviewProgress);
+
+    @Query("SELECT * FROM review_progress WHERE id = :id")
+    ReviewProgress loadReviewProgress(int id);
+
     @Query("SELECT * FROM video_details WHERE id = :id")
     List<VideoDetails> getVideosDetails(int id);
 
     @Query("SELECT * FROM review_details WHERE id = :id")
     List<ReviewDetails> getReviewDetails(int id);
 
-    @Query("SELECT * FROM video_details WHERE type = 'Trailer'  AND id = :id")
-    List<VideoDetails> loadVideo(int id);
+    // The details screen's movie, trailers and reviews as one consistent read
+    @Transaction
+    @Query("SELECT * FROM movie_details WHERE id = :id")
+    MovieWithDetails loadMovieWithDetails(int id);
 
 }
@@ -1,11 +1,73 @@
 package gemenielabs.movies.Database;
 
 
+import android.content.Context;
+
+import androidx.annotation.NonNull;
 import androidx.room.Database;
+import androidx.room.Room;
 import androidx.room.RoomDatabase;
+import androidx.room.migration.Migration;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.sqlite.db.framework.FrameworkSQLiteOpenHelperFactory;
 
-@Database(entities = {MovieDetails.class, VideoDetails.class, ReviewDetails.class}, exportSchema = false, version = 1)
+@Database(entities = {MovieDetails.class, VideoDetails.class, ReviewDetails.class, ReviewProgress.class},
+        exportSchema = false, version = 3)
 public abstract class MovieDatabase extends RoomDatabase {
 
+    private static volatile MovieDatabase INSTANCE;
+
+    // Version 2 indexes the grid flags and the movie id of trailers and reviews
+    static final Migration MIGRATION_1_2 = new Migration(1, 2) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_movie_details_popular` ON `movie_details` (`popular`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_movie_details_toprated` ON `movie_details` (`toprated`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_movie_details_favorite` ON `movie_details` (`favorite`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_video_details_id` ON `video_details` (`id`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_review_details_id` ON `review_details` (`id`)");
+        }
+    };
+
+    // Version 3 records how many review pages each movie has and how many were fetched
+    static final Migration MIGRATION_2_3 = new Migration(2, 3) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `review_progress` (`id` INTEGER NOT NULL, "
+                    + "`last_page` INTEGER NOT NULL, `total_pages` INTEGER NOT NULL, PRIMARY KEY(`id`))");
+        }
+    };
+
     public abstract MovieDao movieDao();
+
+    /**
+     * Get the process-wide database, building it on first use.
+     * Shared by every screen so activities and ViewModels never rebuild it.
+     *
+     * @param context Any context; the application context is retained.
+     * @return The MovieDatabase instance.
+     */
+    public static MovieDatabase getInstance(Context context) {
+        if (INSTANCE == null) {
+            synchronized (MovieDatabase.class) {
+                if (INSTANCE == null) {
+                    final Context appContext = context.getApplicationContext();
+                    Builder<MovieDatabase> builder = Room.databaseBuilder(appContext, MovieDatabase.class, "moviedatabase")
+                            .addMigrations(MIGRATION_1_2, MIGRATION_2_3)
+                            .addCallback(new Callback() {
+                                @Override
+                                public void onCreate(@NonNull SupportSQLiteDatabase db) {
+                                    // First launch: start from the bundled snapshot instead of an empty grid
+                                    SeedCatalogue.populate(appContext, db);
+                                }
+                            });
+                    if (QueryTracer.isEnabled(appContext)) {
+                        builder.openHelperFactory(QueryTracer.shared().wrap(new FrameworkSQLiteOpenHelperFactory()));
+                    }
+                    INSTANCE = builder.build();
+                }
+            }
+        }
+        return INSTANCE;
+    }
 }
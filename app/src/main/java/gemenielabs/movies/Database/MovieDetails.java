@@ -2,10 +2,12 @@ package gemenielabs.movies.Database;
 
 import androidx.room.ColumnInfo;
 import androidx.room.Entity;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
 
 
-@Entity(tableName = "movie_details")
+// The grid filters on each flag, so each has an index
+@Entity(tableName = "movie_details", indices = {@Index("popular"), @Index("toprated"), @Index("favorite")})
 public class MovieDetails {
     @PrimaryKey
     int id;
@@ -66,6 +68,12 @@ public class MovieDetails {
         this.favorite = favorite;
     }
 
+    // A copy with the flag changed, so list diffing sees a new row rather than a mutated one
+    public MovieDetails withFavorite(boolean favorite) {
+        return new MovieDetails(favorite, popular, toprated, id, voteCount, popularity, title, overview,
+                voteAverage, releaseDate, posterPath, originalLanguage);
+    }
+
     public boolean isPopular() {
         return popular;
     }
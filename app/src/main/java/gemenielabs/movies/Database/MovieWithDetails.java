@@ -0,0 +1,23 @@
+package gemenielabs.movies.Database;
+
+import androidx.room.Embedded;
+import androidx.room.Relation;
+
+import java.util.List;
+
+// A movie with its stored trailers and reviews, read together in one transaction
+public class MovieWithDetails {
+
+    @Embedded
+    public MovieDetails movie;
+
+    @Relation(parentColumn = "id", entityColumn = "id")
+    public List<VideoDetails> videos;
+
+    @Relation(parentColumn = "id", entityColumn = "id")
+    public List<ReviewDetails> reviews;
+
+    // Null until a review page has been fetched
+    @Relation(parentColumn = "id", entityColumn = "id")
+    public ReviewProgress reviewProgress;
+}
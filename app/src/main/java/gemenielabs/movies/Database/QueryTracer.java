@@ -0,0 +1,268 @@
+package gemenielabs.movies.Database;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.CursorWrapper;
+
+import androidx.annotation.NonNull;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.sqlite.db.SupportSQLiteOpenHelper;
+import androidx.sqlite.db.SupportSQLiteQuery;
+import androidx.sqlite.db.SupportSQLiteStatement;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import gemenielabs.movies.AppLog;
+import gemenielabs.movies.R;
+
+/**
+ * Opt-in tracing of every statement Room runs.
+ *
+ * {@link #wrap} decorates an open-helper factory so that queries (timed until their cursor is
+ * closed), compiled statements and execSQL calls are counted per SQL string with a latency
+ * histogram. The same SELECT repeated back to back on one thread, as in a per-row read inside
+ * a loop, is flagged as a likely N+1.
+ *
+ * Tracing is off unless R.bool.trace_queries is set, or a test wraps its own factory.
+ */
+public class QueryTracer {
+
+    private static final String TAG = "QueryTracer";
+    // Upper bounds of the histogram buckets in microseconds; the last bucket is everything slower
+    public static final long[] BUCKET_BOUNDS_US = {100, 500, 1000, 2000, 5000, 10000, 50000};
+    // This many runs of one SELECT, each starting within the gap of the previous, look like N+1
+    private static final int N_PLUS_ONE_RUN = 10;
+    private static final long N_PLUS_ONE_GAP_NS = 2_000_000;
+
+    private static QueryTracer sShared;
+
+    // What has been recorded for one SQL string
+    public static class Stats {
+        public final String sql;
+        public final int count;
+        public final long totalNanos;
+        public final long maxNanos;
+        public final int[] histogram;
+        public final boolean suspectedNPlusOne;
+
+        Stats(Entry entry) {
+            sql = entry.sql;
+            count = entry.count;
+            totalNanos = entry.totalNanos;
+            maxNanos = entry.maxNanos;
+            histogram = entry.histogram.clone();
+            suspectedNPlusOne = entry.suspectedNPlusOne;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return count + "x, " + totalNanos / 1000 + "us total, " + maxNanos / 1000 + "us max"
+                    + (suspectedNPlusOne ? ", N+1?" : "") + ": " + sql;
+        }
+    }
+
+    private static class Entry {
+        final String sql;
+        final boolean select;
+        final int[] histogram = new int[BUCKET_BOUNDS_US.length + 1];
+        int count;
+        long totalNanos;
+        long maxNanos;
+        boolean suspectedNPlusOne;
+        long lastThreadId = -1;
+        long lastEndNanos;
+        int run;
+
+        Entry(String sql) {
+            this.sql = sql;
+            this.select = sql.regionMatches(true, 0, "SELECT", 0, 6);
+        }
+    }
+
+    private interface Handler {
+        Object invoke(Object target, Method method, Object[] args) throws Throwable;
+    }
+
+    private final Map<String, Entry> mEntries = new HashMap<>();
+
+    // Whether the app's database should be traced
+    public static boolean isEnabled(Context context) {
+        return context.getResources().getBoolean(R.bool.trace_queries);
+    }
+
+    // The tracer used for the app's own database
+    public static synchronized QueryTracer shared() {
+        if (sShared == null) {
+            sShared = new QueryTracer();
+        }
+        return sShared;
+    }
+
+    public SupportSQLiteOpenHelper.Factory wrap(final SupportSQLiteOpenHelper.Factory delegate) {
+        return configuration -> proxy(SupportSQLiteOpenHelper.class, delegate.create(configuration), new Handler() {
+            private Object mDatabase;
+            private SupportSQLiteDatabase mTracedDatabase;
+
+            @Override
+            public Object invoke(Object target, Method method, Object[] args) throws Throwable {
+                Object result = call(target, method, args);
+                String name = method.getName();
+                if (result != null && (name.equals("getWritableDatabase") || name.equals("getReadableDatabase"))) {
+                    synchronized (this) {
+                        if (mDatabase != result) {
+                            mDatabase = result;
+                            mTracedDatabase = proxy(SupportSQLiteDatabase.class, result, QueryTracer.this::onDatabaseCall);
+                        }
+                        return mTracedDatabase;
+                    }
+                }
+                return result;
+            }
+        });
+    }
+
+    // Recorded statements, slowest in total first
+    public List<Stats> snapshot() {
+        List<Stats> stats = new ArrayList<>();
+        synchronized (mEntries) {
+            for (Entry entry : mEntries.values()) {
+                stats.add(new Stats(entry));
+            }
+        }
+        Collections.sort(stats, (a, b) -> Long.compare(b.totalNanos, a.totalNanos));
+        return stats;
+    }
+
+    public void reset() {
+        synchronized (mEntries) {
+            mEntries.clear();
+        }
+    }
+
+    // Log the snapshot, one line per statement
+    public void dump() {
+        for (Stats stats : snapshot()) {
+            AppLog.i(TAG, stats::toString);
+        }
+    }
+
+    private Object onDatabaseCall(Object target, Method method, Object[] args) throws Throwable {
+        String name = method.getName();
+        if (name.equals("query") && args != null && args.length > 0) {
+            String sql = args[0] instanceof SupportSQLiteQuery
+                    ? ((SupportSQLiteQuery) args[0]).getSql() : String.valueOf(args[0]);
+            long start = System.nanoTime();
+            Cursor cursor = (Cursor) call(target, method, args);
+            return cursor == null ? null : new TracedCursor(cursor, sql, start);
+        }
+        if (name.equals("compileStatement") && args != null && args.length == 1) {
+            final String sql = (String) args[0];
+            return proxy(SupportSQLiteStatement.class, call(target, method, args),
+                    (statement, statementMethod, statementArgs) -> onStatementCall(sql, statement, statementMethod, statementArgs));
+        }
+        if (name.equals("execSQL") && args != null && args.length > 0) {
+            return timed(String.valueOf(args[0]), target, method, args);
+        }
+        return call(target, method, args);
+    }
+
+    private Object onStatementCall(String sql, Object target, Method method, Object[] args) throws Throwable {
+        if (method.getName().startsWith("execute") || method.getName().startsWith("simpleQueryFor")) {
+            return timed(sql, target, method, args);
+        }
+        return call(target, method, args);
+    }
+
+    private Object timed(String sql, Object target, Method method, Object[] args) throws Throwable {
+        long start = System.nanoTime();
+        try {
+            return call(target, method, args);
+        } finally {
+            record(sql, start);
+        }
+    }
+
+    private void record(String sql, long startNanos) {
+        long end = System.nanoTime();
+        long duration = end - startNanos;
+        long threadId = Thread.currentThread().getId();
+        boolean flagged = false;
+        synchronized (mEntries) {
+            Entry entry = mEntries.get(sql);
+            if (entry == null) {
+                entry = new Entry(sql);
+                mEntries.put(sql, entry);
+            }
+            entry.count++;
+            entry.totalNanos += duration;
+            entry.maxNanos = Math.max(entry.maxNanos, duration);
+            entry.histogram[bucketFor(duration / 1000)]++;
+            if (entry.select) {
+                boolean continues = entry.lastThreadId == threadId && startNanos - entry.lastEndNanos < N_PLUS_ONE_GAP_NS;
+                entry.run = continues ? entry.run + 1 : 1;
+                if (entry.run >= N_PLUS_ONE_RUN && !entry.suspectedNPlusOne) {
+                    entry.suspectedNPlusOne = true;
+                    flagged = true;
+                }
+                entry.lastThreadId = threadId;
+                entry.lastEndNanos = end;
+            }
+        }
+        if (flagged) {
+            AppLog.w(TAG, "Possible N+1, " + N_PLUS_ONE_RUN + " back-to-back runs of: " + sql);
+        }
+    }
+
+    private static int bucketFor(long micros) {
+        for (int i = 0; i < BUCKET_BOUNDS_US.length; i++) {
+            if (micros < BUCKET_BOUNDS_US[i]) {
+                return i;
+            }
+        }
+        return BUCKET_BOUNDS_US.length;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, final Object target, final Handler handler) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> handler.invoke(target, method, args));
+    }
+
+    private static Object call(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    // A query's time runs until its rows have been read and the cursor closed
+    private class TracedCursor extends CursorWrapper {
+        private final String mSql;
+        private final long mStartNanos;
+        private boolean mRecorded;
+
+        TracedCursor(Cursor cursor, String sql, long startNanos) {
+            super(cursor);
+            mSql = sql;
+            mStartNanos = startNanos;
+        }
+
+        @Override
+        public void close() {
+            super.close();
+            if (!mRecorded) {
+                mRecorded = true;
+                record(mSql, mStartNanos);
+            }
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package gemenielabs.movies.Database;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+// How far a movie's reviews have been fetched, so a finished list isn't refetched on every open
+@Entity(tableName = "review_progress")
+public class ReviewProgress {
+
+    @PrimaryKey
+    @ColumnInfo(name = "id")
+    public int id;
+
+    // Highest page fetched so far
+    @ColumnInfo(name = "last_page")
+    public int lastPage;
+
+    @ColumnInfo(name = "total_pages")
+    public int totalPages;
+
+    public ReviewProgress(int id, int lastPage, int totalPages) {
+        this.id = id;
+        this.lastPage = lastPage;
+        this.totalPages = totalPages;
+    }
+
+    // The page to fetch next, or 0 if the last one is in
+    public int nextPage() {
+        return lastPage < totalPages ? lastPage + 1 : 0;
+    }
+}
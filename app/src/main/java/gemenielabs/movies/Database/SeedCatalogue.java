@@ -0,0 +1,83 @@
+package gemenielabs.movies.Database;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+
+import gemenielabs.movies.AppLog;
+
+/**
+ * Fills a freshly created database from the bundled seed snapshot.
+ *
+ * The snapshot is produced at build time by the generateSeedCatalogue Gradle task and holds the
+ * popular and top rated discover rows, so the grid has content on first launch even offline.
+ * Later refreshes upsert over these rows as usual.
+ */
+public final class SeedCatalogue {
+
+    public static final String ASSET = "seed_catalogue.json";
+    private static final String TAG = "SeedCatalogue";
+
+    private SeedCatalogue() {
+    }
+
+    public static void populate(Context context, SupportSQLiteDatabase db) {
+        JSONArray rows;
+        try (InputStream in = context.getAssets().open(ASSET)) {
+            rows = new JSONArray(readFully(in));
+        } catch (FileNotFoundException e) {
+            // Built without a TMDB key, so there is nothing to seed
+            return;
+        } catch (Exception e) {
+            AppLog.w(TAG, "Unreadable seed snapshot", e);
+            return;
+        }
+
+        db.beginTransaction();
+        try {
+            for (int i = 0; i < rows.length(); i++) {
+                JSONObject row = rows.optJSONObject(i);
+                if (row == null) {
+                    continue;
+                }
+                ContentValues values = new ContentValues();
+                values.put("id", row.optInt("id"));
+                values.put("favorite", false);
+                values.put("popular", row.optBoolean("popular"));
+                values.put("toprated", row.optBoolean("toprated"));
+                values.put("vote_count", row.optInt("vote_count"));
+                values.put("popularity", (float) row.optDouble("popularity"));
+                values.put("title", row.optString("title"));
+                values.put("overview", row.optString("overview"));
+                values.put("vote_average", row.optInt("vote_average"));
+                values.put("release_date", row.optString("release_date"));
+                values.put("poster_path", row.optString("poster_path"));
+                values.put("original_language", row.optString("original_language"));
+                db.insert("movie_details", SQLiteDatabase.CONFLICT_REPLACE, values);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    private static String readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toString("UTF-8");
+    }
+}
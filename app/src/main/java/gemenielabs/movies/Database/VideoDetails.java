@@ -2,9 +2,11 @@ package gemenielabs.movies.Database;
 
 import androidx.room.ColumnInfo;
 import androidx.room.Entity;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
 
-@Entity(tableName = "video_details")
+// Looked up by movie id, which is not the primary key
+@Entity(tableName = "video_details", indices = {@Index("id")})
 public class VideoDetails {
 
     @PrimaryKey(autoGenerate = true)
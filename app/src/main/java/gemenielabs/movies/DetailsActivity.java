@@ -1,14 +1,13 @@
 package gemenielabs.movies;
 
-import static gemenielabs.movies.MainActivity.movieDao;
-
-import android.app.Activity;
+import android.graphics.drawable.Drawable;
 import android.os.Bundle;
-import android.util.Log;
+import android.os.Looper;
+import android.transition.Transition;
 import android.view.MenuItem;
 import android.view.View;
-import android.webkit.WebView;
 import android.widget.ImageView;
+import android.widget.ScrollView;
 import android.widget.TextView;
 
 import androidx.appcompat.app.ActionBar;
@@ -18,15 +17,16 @@ import androidx.lifecycle.ViewModelProvider;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
+import com.squareup.picasso.Callback;
+import com.squareup.picasso.NetworkPolicy;
 import com.squareup.picasso.Picasso;
+import com.squareup.picasso.RequestCreator;
 
 import java.util.List;
-import java.util.concurrent.Executors;
 
 import gemenielabs.movies.Adapter.ReviewRecycler;
 import gemenielabs.movies.Adapter.VideoRecycler;
 import gemenielabs.movies.Database.MovieDetails;
-import gemenielabs.movies.Database.ReviewDetails;
 import gemenielabs.movies.Database.VideoDetails;
 
 
@@ -34,6 +34,10 @@ public class DetailsActivity extends AppCompatActivity implements
         VideoRecycler.onListClickListener{
 
     public static final String TRAILER = "trailer";
+    private static final String TAG = "DetailsActivity";
+    private static final long ENTER_TRANSITION_TIMEOUT_MS = 300;
+    // The next review page is requested once the end of the screen is this close
+    private static final int REVIEW_PREFETCH_DP = 600;
     public TextView plotTX;
     public TextView ratingTX;
     public TextView dateTX;
@@ -42,22 +46,28 @@ public class DetailsActivity extends AppCompatActivity implements
     public RecyclerView reviewList;
     public TextView movieTitle;
     private ImageView favoriteButton;
+    private ScrollView scrollView;
 
 
 
-    private MovieDetails movieDetails;
     private ReviewRecycler reviewRecycler;
     private VideoRecycler videoRecycler;
 
-    private LiveDataVideoModel mLiveDataVideoModel;
-    private LiveDataReviewModel mLiveDataReviewModel;
-    public WebView webView;
-    private int movieID;
+    private LiveDataDetailsModel mLiveDataDetailsModel;
+    private TrailerPlayer trailerPlayer;
+    private boolean posterLoaded;
+    private boolean playerWarmUpScheduled;
+    private boolean enterTransitionStarted;
+    // True while the shared-element enter transition still has to run
+    private boolean awaitingEnterTransition;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_details);
+        // Hold the shared-element transition until the grid's poster bitmap is in place
+        awaitingEnterTransition = savedInstanceState == null && getWindow().getSharedElementEnterTransition() != null;
+        supportPostponeEnterTransition();
         favoriteButton = findViewById(R.id.favorite_button);
         plotTX = findViewById(R.id.plot_text);
         ratingTX = findViewById(R.id.rating_text);
@@ -66,41 +76,12 @@ public class DetailsActivity extends AppCompatActivity implements
         trailerList = findViewById(R.id.trailer_list);
         reviewList = findViewById(R.id.review_list);
         movieTitle = findViewById(R.id.movie_title);
-        webView = findViewById(R.id.webview);
-        webView.setVisibility(View.INVISIBLE);
-        // Get movie ID and set favorite button icon
-        movieID = getIntent().getIntExtra(MainActivity.MOVIE_ID, 0);
-        if(getIntent().getBooleanExtra(MainActivity.IS_FAVORITE, false)){
-            favoriteButton.setImageDrawable(getDrawable(R.drawable.gold));
-        } else {
-            favoriteButton.setImageDrawable(getDrawable(R.drawable.white));
-        }
-
-        // Initialize LiveData models
-        mLiveDataVideoModel = new ViewModelProvider(this).get(LiveDataVideoModel.class);
-        mLiveDataReviewModel = new ViewModelProvider(this).get(LiveDataReviewModel.class);
-        setLiveData();
-
-        Executors.newSingleThreadExecutor().execute(() -> {
-            // Check if video and review details are already available in the database
-            List<VideoDetails> videoDetails = movieDao.getVideosDetails(movieID);
-            List<ReviewDetails> reviewDetails = movieDao.getReviewDetails(movieID);
-            if (videoDetails.size() < 1) {
-                // Fetch video and review details from web if not available in the database
-                GetWebData getWebData = new GetWebData();
-                videoDetails = getWebData.getVideoDetails(getString(R.string.moviedb_api_key),
-                        getString(R.string.google_youtube_api_key), movieID);
-                reviewDetails = getWebData.getReviewDetails(getString(R.string.moviedb_api_key), movieID);
-            }
-
-            // Update LiveData models with the fetched details
-            final List<VideoDetails> videoValue = videoDetails;
-            final List<ReviewDetails> reviewValue = reviewDetails;
-            runOnUiThread(() -> {
-                mLiveDataVideoModel.getVideos().setValue(videoValue);
-                mLiveDataReviewModel.getReviews().setValue(reviewValue);
-            });
-        });
+        scrollView = findViewById(R.id.details_scroll);
+        // Reviews are paged in as the screen scrolls towards them
+        scrollView.getViewTreeObserver().addOnScrollChangedListener(this::loadMoreReviewsIfNearEnd);
+        trailerPlayer = new TrailerPlayer(findViewById(R.id.trailer_container));
+        // Set favorite button icon until the row is loaded
+        setFavoriteIcon(getIntent().getBooleanExtra(MainActivity.IS_FAVORITE, false));
 
         // Create recycler views
         reviewRecycler = new ReviewRecycler();
@@ -108,39 +89,144 @@ public class DetailsActivity extends AppCompatActivity implements
         createRecycler(reviewList, "not video");
         createRecycler(trailerList, "video");
 
-        // Populate UI with movie details
-        populateUI();
+        // The ViewModel survives rotation and loads its data only once
+        mLiveDataDetailsModel = new ViewModelProvider(this).get(LiveDataDetailsModel.class);
+        setLiveData();
+        mLiveDataDetailsModel.start();
 
         ActionBar actionBar = getSupportActionBar();
         if (actionBar != null) {
             actionBar.setDisplayHomeAsUpEnabled(true);
         }
+
+        // Never hold the transition for long if the poster isn't cached
+        imageView.postDelayed(this::startEnterTransition, ENTER_TRANSITION_TIMEOUT_MS);
+    }
+
+    // Create and load the trailer player once the screen has settled so the first tap is warm
+    private void warmUpTrailerPlayer() {
+        if (playerWarmUpScheduled) {
+            return;
+        }
+        playerWarmUpScheduled = true;
+        Looper.myQueue().addIdleHandler(() -> {
+            if (!isDestroyed()) {
+                trailerPlayer.warmUp();
+            }
+            return false;
+        });
+    }
+
+    @Override
+    protected void onDestroy() {
+        Picasso.get().cancelRequest(imageView);
+        trailerPlayer.release();
+        super.onDestroy();
     }
 
     // Populate UI with movie details
-    public void populateUI() {
-        Executors.newSingleThreadExecutor().execute(() -> {
-            // Load movie details from the database
-            movieDetails = movieDao.loadMovieID(movieID);
-            runOnUiThread(() -> {
-                // Update UI elements with movie details
-                Picasso.get()
-                        .load(MainActivity.MOVIE_DB_IMAGE_BASE + MainActivity.IMAGE_SIZE + movieDetails.getPosterPath())
-                        .noFade()
-                        .noPlaceholder()
-                        .into(imageView);
-
-                plotTX.setText(movieDetails.getOverview());
-                ratingTX.setText(movieDetails.getVoteAverage());
-                dateTX.setText(movieDetails.getReleaseDate());
-                movieTitle.setText(movieDetails.getTitle());
-                if (movieDetails.isFavorite()) {
-                    favoriteButton.setActivated(true);
-                }
-            });
+    public void populateUI(MovieItem movieItem) {
+        if (movieItem == null) {
+            return;
+        }
+        MovieDetails movieDetails = movieItem.movie;
+        // Favorite toggles re-deliver the row; the poster only needs loading once
+        if (!posterLoaded) {
+            posterLoaded = true;
+            loadPoster(movieDetails.getPosterPath());
+        }
+
+        plotTX.setText(movieDetails.getOverview());
+        ratingTX.setText(movieItem.rating);
+        dateTX.setText(movieItem.releaseDate);
+        movieTitle.setText(movieDetails.getTitle());
+        setFavoriteIcon(movieDetails.isFavorite());
+    }
+
+    // Show the grid's already cached poster straight away, then swap in the sharper details size
+    private void loadPoster(final String posterPath) {
+        final PosterSize detailsSize = PosterSize.forDetails(this);
+        // Same size and transformation as the grid tile, so this is a memory-cache hit
+        PosterSize.forGrid(this).load(posterPath)
+                .networkPolicy(NetworkPolicy.OFFLINE)
+                .noFade()
+                .noPlaceholder()
+                .into(imageView, new Callback() {
+                    @Override
+                    public void onSuccess() {
+                        startEnterTransition();
+                        final Drawable gridPoster = imageView.getDrawable();
+                        afterEnterTransition(() -> upgradePoster(detailsSize, posterPath, gridPoster));
+                    }
+
+                    @Override
+                    public void onError(Exception e) {
+                        startEnterTransition();
+                        upgradePoster(detailsSize, posterPath, null);
+                    }
+                });
+    }
+
+    private void upgradePoster(PosterSize detailsSize, String posterPath, Drawable current) {
+        if (isDestroyed()) {
+            return;
+        }
+        RequestCreator request = detailsSize.load(posterPath).noFade();
+        if (current != null) {
+            request.placeholder(current);
+        } else {
+            request.noPlaceholder();
+        }
+        request.into(imageView);
+    }
+
+    private void startEnterTransition() {
+        if (enterTransitionStarted) {
+            return;
+        }
+        enterTransitionStarted = true;
+        supportStartPostponedEnterTransition();
+    }
+
+    // Run once the shared-element transition has finished, so the bitmap isn't swapped mid-animation
+    private void afterEnterTransition(final Runnable action) {
+        if (!awaitingEnterTransition) {
+            action.run();
+            return;
+        }
+        awaitingEnterTransition = false;
+        getWindow().getSharedElementEnterTransition().addListener(new Transition.TransitionListener() {
+            @Override
+            public void onTransitionEnd(Transition transition) {
+                transition.removeListener(this);
+                action.run();
+            }
+
+            @Override
+            public void onTransitionCancel(Transition transition) {
+                transition.removeListener(this);
+                action.run();
+            }
+
+            @Override
+            public void onTransitionStart(Transition transition) {
+            }
+
+            @Override
+            public void onTransitionPause(Transition transition) {
+            }
+
+            @Override
+            public void onTransitionResume(Transition transition) {
+            }
         });
     }
 
+    private void setFavoriteIcon(boolean favorite) {
+        favoriteButton.setActivated(favorite);
+        favoriteButton.setImageDrawable(getDrawable(favorite ? R.drawable.gold : R.drawable.white));
+    }
+
     // Create a recycler view with the specified type
     public void createRecycler(RecyclerView recyclerView, String type) {
         recyclerView.setLayoutManager(new LinearLayoutManager(this));
@@ -151,31 +237,21 @@ public class DetailsActivity extends AppCompatActivity implements
         }
     }
 
+    // Ask for the next review page when the end of the screen is in reach
+    private void loadMoreReviewsIfNearEnd() {
+        View content = scrollView.getChildAt(0);
+        if (content == null) {
+            return;
+        }
+        int remaining = content.getBottom() - (scrollView.getScrollY() + scrollView.getHeight());
+        if (remaining < REVIEW_PREFETCH_DP * getResources().getDisplayMetrics().density) {
+            mLiveDataDetailsModel.loadMoreReviews();
+        }
+    }
+
     // Add or remove the movie from favorites
     public void addToFavorites(View v) {
-        Executors.newSingleThreadExecutor().execute(() -> {
-            // Load movie details from the database
-            MovieDetails movieDetails = movieDao.loadMovieID(movieID);
-            boolean favorited = false;
-            if (movieDetails.isFavorite()) {
-                movieDetails.setFavorite(false);
-            } else {
-                movieDetails.setFavorite(true);
-                favorited = true;
-            }
-            // Delete and insert movie details to update the favorite status
-            movieDao.delete(movieDetails);
-            movieDao.insertAll(movieDetails);
-            final boolean imageset = favorited;
-            runOnUiThread(() -> {
-                // Update favorite button icon
-                if (imageset) {
-                    favoriteButton.setImageDrawable(getDrawable(R.drawable.gold));
-                } else {
-                    favoriteButton.setImageDrawable(getDrawable(R.drawable.white));
-                }
-            });
-        });
+        mLiveDataDetailsModel.toggleFavorite();
     }
 
     // Handle option item selections
@@ -192,21 +268,13 @@ public class DetailsActivity extends AppCompatActivity implements
     @Override
     public void onTrailerClicked(final int clickedPosition, View v) {
         if (v.getTag().toString().equals(TRAILER)) {
-            final Activity activity = this;
-            Executors.newSingleThreadExecutor().execute(() -> {
-                // Load video key from the database
-                final String key = movieDao.loadVideo(movieID).get(clickedPosition).getKey();
-                runOnUiThread(() -> {
-                    webView.setVisibility(View.VISIBLE);
-                    String url = "https://www.youtube.com/embed/" + key + "?API_key=" + getString(R.string.google_youtube_api_key);
-                    webView.loadUrl(url);
-                    // **** YOUTUBE STANDALONE PLAYER DEPRECATED ****
-                    //Intent intent = new Intent(this, VideoActivity.class);
-                    //intent.putExtra("KEY", key);
-                    // Start the VideoActivity
-                    //startActivity(intent);
-                });
-            });
+            // The bound item already carries the key, so play it straight on the warm player
+            trailerPlayer.play(videoRecycler.getItem(clickedPosition).getKey());
+            // **** YOUTUBE STANDALONE PLAYER DEPRECATED ****
+            //Intent intent = new Intent(this, VideoActivity.class);
+            //intent.putExtra(VideoActivity.KEY, key);
+            // Start the VideoActivity
+            //startActivity(intent);
         }
     }
 
@@ -215,16 +283,20 @@ public class DetailsActivity extends AppCompatActivity implements
         final Observer<List<VideoDetails>> videoObserver = videoReviewDetails -> {
             videoRecycler.setVideoDetails(videoReviewDetails);
             videoRecycler.notifyDataSetChanged();
-        };
-        final Observer<List<ReviewDetails>> reviewObserver = reviewDetails -> {
-            if (!reviewDetails.isEmpty()) {
-                Log.i("TAG SETReviewLIVEDATA", reviewDetails.get(0).getAuthor());
+            // Only a movie with trailers is worth loading the player page for
+            if (!videoReviewDetails.isEmpty()) {
+                warmUpTrailerPlayer();
             }
-            reviewRecycler.setReviewDetails(reviewDetails);
-            reviewRecycler.notifyDataSetChanged();
+        };
+        final Observer<List<ReviewItem>> reviewObserver = reviewItems -> {
+            AppLog.d(TAG, () -> "Reviews: " + reviewItems.size());
+            reviewRecycler.setReviews(reviewItems);
+            // A short page may not fill the screen, leaving nothing to scroll to trigger the next
+            scrollView.post(this::loadMoreReviewsIfNearEnd);
         };
 
-        mLiveDataVideoModel.getVideos().observe(this, videoObserver);
-        mLiveDataReviewModel.getReviews().observe(this, reviewObserver);
+        mLiveDataDetailsModel.getMovie().observe(this, this::populateUI);
+        mLiveDataDetailsModel.getVideos().observe(this, videoObserver);
+        mLiveDataDetailsModel.getReviews().observe(this, reviewObserver);
     }
 }
\ No newline at end of file
@@ -0,0 +1,151 @@
+package gemenielabs.movies;
+
+import android.content.Context;
+import android.os.Process;
+import android.os.SystemClock;
+
+import com.squareup.picasso.Picasso;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import gemenielabs.movies.Database.MovieDao;
+import gemenielabs.movies.Database.MovieDatabase;
+import gemenielabs.movies.Database.MovieDetails;
+import gemenielabs.movies.Database.MovieWithDetails;
+
+/**
+ * Starts loading a movie's details screen while its poster tile is still being pressed.
+ *
+ * On touch-down the grid asks for the movie's stored details and its full-size poster at low
+ * priority. A tap that turns into a scroll, or lifts off the tile, cancels both. If the tap
+ * completes, {@link LiveDataDetailsModel} takes the in-flight read instead of starting its own,
+ * and the poster request is already under the details screen's cache key: a read still queued is
+ * cancelled so the screen reads straight away, and one under way is raised out of the background
+ * priority. Only the few most recent presses are kept, and a read is only reused while fresh, so
+ * a stored favorite flag can't outdate what the grid passed.
+ */
+public class DetailsPrefetcher {
+
+    private static final String TAG = "DetailsPrefetcher";
+    private static final int MAX_KEPT = 4;
+    // Longer than any tap; an older read may predate a favorite change
+    private static final long MAX_AGE_MS = 2000;
+
+    private static volatile DetailsPrefetcher sInstance;
+
+    // One pressed movie's read, and the tag of its poster request
+    private static class Entry {
+        final Object posterTag = new Object();
+        final long pressedAt = SystemClock.uptimeMillis();
+        Future<MovieWithDetails> details;
+        // Set once the read is running, with the thread running it; guarded by the entry
+        boolean running;
+        int readerTid;
+    }
+
+    private final MovieDao mMovieDao;
+    private final PosterSize mPosterSize;
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+    // Prefetches by movie id, oldest first; only touched on the main thread
+    private final Map<Integer, Entry> mEntries = new LinkedHashMap<>();
+
+    private DetailsPrefetcher(Context context) {
+        mMovieDao = MovieDatabase.getInstance(context).movieDao();
+        mPosterSize = PosterSize.forDetails(context);
+    }
+
+    public static DetailsPrefetcher getInstance(Context context) {
+        if (sInstance == null) {
+            synchronized (DetailsPrefetcher.class) {
+                if (sInstance == null) {
+                    sInstance = new DetailsPrefetcher(context.getApplicationContext());
+                }
+            }
+        }
+        return sInstance;
+    }
+
+    /**
+     * Start prefetching the movie's details and full-size poster, unless already started.
+     * Call on the main thread.
+     */
+    public void prefetch(MovieDetails movie) {
+        final int id = movie.getId();
+        Entry existing = mEntries.get(id);
+        if (existing != null && !existing.details.isDone()) {
+            return;
+        }
+        // A finished read may be stale by now; read again
+        cancel(id);
+        final Entry entry = new Entry();
+        entry.details = mExecutor.submit(() -> {
+            synchronized (entry) {
+                // Yield to whatever the UI is doing; this read is only a guess
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                entry.readerTid = Process.myTid();
+                entry.running = true;
+            }
+            return mMovieDao.loadMovieWithDetails(id);
+        });
+        mEntries.put(id, entry);
+        if (movie.getPosterPath() != null) {
+            // Same size and transformation as the details screen's poster, so it lands under that cache key
+            mPosterSize.load(movie.getPosterPath())
+                    .priority(Picasso.Priority.LOW)
+                    .tag(entry.posterTag)
+                    .fetch();
+        }
+        if (mEntries.size() > MAX_KEPT) {
+            Iterator<Map.Entry<Integer, Entry>> eldest = mEntries.entrySet().iterator();
+            cancel(eldest.next().getValue());
+            eldest.remove();
+        }
+        AppLog.v(TAG, () -> "Prefetching " + id);
+    }
+
+    // Drop the movie's prefetch, e.g. when the press became a scroll. Call on the main thread
+    public void cancel(int id) {
+        Entry entry = mEntries.remove(id);
+        if (entry != null) {
+            cancel(entry);
+        }
+    }
+
+    /**
+     * Hand over the movie's running or finished details read, or null if the caller should read
+     * for itself: when there was none, it hadn't started yet (it is cancelled so it doesn't queue
+     * ahead of the caller) or it is too old to trust. The poster request is left to finish for
+     * the details screen. Call on the main thread.
+     */
+    public Future<MovieWithDetails> take(int id) {
+        Entry entry = mEntries.remove(id);
+        if (entry == null) {
+            return null;
+        }
+        if (SystemClock.uptimeMillis() - entry.pressedAt > MAX_AGE_MS) {
+            entry.details.cancel(false);
+            return null;
+        }
+        synchronized (entry) {
+            if (!entry.running) {
+                entry.details.cancel(false);
+                return null;
+            }
+            if (!entry.details.isDone()) {
+                // Someone is waiting on this read now
+                Process.setThreadPriority(entry.readerTid, Process.THREAD_PRIORITY_DEFAULT);
+            }
+        }
+        return entry.details;
+    }
+
+    private static void cancel(Entry entry) {
+        entry.details.cancel(false);
+        Picasso.get().cancelTag(entry.posterTag);
+    }
+}
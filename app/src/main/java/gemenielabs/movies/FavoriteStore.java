@@ -0,0 +1,185 @@
+package gemenielabs.movies;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import gemenielabs.movies.Database.MovieDatabase;
+import gemenielabs.movies.Database.MovieDetails;
+
+/**
+ * Writes favorite changes behind the UI.
+ *
+ * A change is announced to listeners straight away, so every screen can show it before it is
+ * stored. The write follows shortly after on a single background thread: changes to the same
+ * movie made in the meantime collapse into one, and each batch is stored as single-column
+ * updates in one transaction. Favorite posters are pinned (or unpinned) once written. If the
+ * write fails or finds no row to update, listeners are told the movie is back as it was stored.
+ */
+public class FavoriteStore {
+
+    /**
+     * Told about every favorite change on the main thread, before it is written.
+     */
+    public interface Listener {
+        void onFavoriteChanged(MovieDetails movie);
+    }
+
+    // Taps this close together are written as one change
+    private static final long WRITE_DELAY_MS = 200;
+
+    private static final String TAG = "FavoriteStore";
+
+    private static volatile FavoriteStore sInstance;
+
+    private final MovieDatabase mDatabase;
+    private final ScheduledExecutorService mWriter = Executors.newSingleThreadScheduledExecutor();
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    // Latest unwritten state per movie id, in the order the movies were last touched
+    private final Map<Integer, MovieDetails> mPending = new LinkedHashMap<>();
+    // The batch being written, guarded by mPending
+    private List<MovieDetails> mWriting = new ArrayList<>();
+    private final List<Listener> mListeners = new ArrayList<>();
+    private boolean mFlushScheduled;
+
+    private FavoriteStore(Context context) {
+        mDatabase = MovieDatabase.getInstance(context);
+    }
+
+    public static FavoriteStore getInstance(Context context) {
+        if (sInstance == null) {
+            synchronized (FavoriteStore.class) {
+                if (sInstance == null) {
+                    sInstance = new FavoriteStore(context.getApplicationContext());
+                }
+            }
+        }
+        return sInstance;
+    }
+
+    // Listeners are called on the main thread; remove them when their owner goes away
+    public void addListener(Listener listener) {
+        mListeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        mListeners.remove(listener);
+    }
+
+    /**
+     * Mark the movie as (not) favorite. Call on the main thread with the row as it should now be.
+     */
+    public void setFavorite(MovieDetails movie) {
+        notifyListeners(movie);
+        synchronized (mPending) {
+            mPending.remove(movie.getId());
+            mPending.put(movie.getId(), movie);
+            if (mFlushScheduled) {
+                return;
+            }
+            mFlushScheduled = true;
+        }
+        mWriter.schedule(this::flush, WRITE_DELAY_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Changes announced but not yet stored, oldest first. A database read taken now may not
+     * include them, so a reader re-applies them on top. Safe to call from any thread.
+     */
+    public List<MovieDetails> unwritten() {
+        synchronized (mPending) {
+            List<MovieDetails> unwritten = new ArrayList<>(mWriting);
+            unwritten.addAll(mPending.values());
+            return unwritten;
+        }
+    }
+
+    private void notifyListeners(MovieDetails movie) {
+        for (Listener listener : new ArrayList<>(mListeners)) {
+            listener.onFavoriteChanged(movie);
+        }
+    }
+
+    private void flush() {
+        final List<MovieDetails> batch;
+        synchronized (mPending) {
+            batch = new ArrayList<>(mPending.values());
+            mPending.clear();
+            mWriting = batch;
+            mFlushScheduled = false;
+        }
+        // Changes whose row is gone, e.g. a search hit pruned since it was shown
+        final List<MovieDetails> missing = new ArrayList<>();
+        try {
+            mDatabase.runInTransaction(() -> {
+                for (MovieDetails movie : batch) {
+                    if (mDatabase.movieDao().setFavorite(movie.getId(), movie.isFavorite()) == 0) {
+                        missing.add(movie);
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            AppLog.e(TAG, "Could not store " + batch.size() + " favorite change(s)", e);
+            revert(batch);
+            return;
+        } finally {
+            synchronized (mPending) {
+                mWriting = new ArrayList<>();
+            }
+        }
+        if (!missing.isEmpty()) {
+            AppLog.w(TAG, missing.size() + " favorite change(s) matched no stored movie");
+            revert(missing);
+        }
+        ImageDiskCache imageDiskCache = ImageDiskCache.get();
+        for (MovieDetails movie : batch) {
+            if (missing.contains(movie)) {
+                continue;
+            }
+            // Favorites keep their poster on disk so they still show offline
+            if (movie.isFavorite()) {
+                imageDiskCache.pin(movie.getPosterPath());
+            } else {
+                imageDiskCache.unpin(movie.getPosterPath());
+            }
+        }
+    }
+
+    // Show the stored state again for a failed batch, except where a newer change is waiting
+    private void revert(List<MovieDetails> batch) {
+        final List<MovieDetails> reverted = new ArrayList<>();
+        for (MovieDetails movie : batch) {
+            boolean stored;
+            try {
+                MovieDetails row = mDatabase.movieDao().loadMovieID(movie.getId());
+                // A movie that isn't stored isn't a favorite
+                stored = row != null && row.isFavorite();
+            } catch (RuntimeException e) {
+                // Every change is a toggle, so the stored state is most likely the opposite
+                stored = !movie.isFavorite();
+            }
+            if (stored != movie.isFavorite()) {
+                reverted.add(movie.withFavorite(stored));
+            }
+        }
+        mMainHandler.post(() -> {
+            for (MovieDetails movie : reverted) {
+                boolean superseded;
+                synchronized (mPending) {
+                    superseded = mPending.containsKey(movie.getId());
+                }
+                if (!superseded) {
+                    notifyListeners(movie);
+                }
+            }
+        });
+    }
+}
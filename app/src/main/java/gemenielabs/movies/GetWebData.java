@@ -1,50 +1,142 @@
 package gemenielabs.movies;
 
-import static gemenielabs.movies.MainActivity.movieDao;
-import android.util.Log;
-
-import com.google.gson.FieldNamingPolicy;
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
+import android.os.SystemClock;
 
+import androidx.annotation.VisibleForTesting;
 
 import org.json.JSONArray;
 import org.json.JSONObject;
+
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Objects;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
+import gemenielabs.movies.Database.MovieDao;
 import gemenielabs.movies.Database.ReviewDetails;
+import gemenielabs.movies.Database.ReviewProgress;
 import gemenielabs.movies.Database.VideoDetails;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
-import okhttp3.Response;
 import gemenielabs.movies.Database.MovieDetails;
 
+/**
+ * Fetches TMDB and YouTube data and stores it in Room. Every call is skipped while
+ * {@link ConnectivityMonitor} reports the device offline, returning what is stored (or null
+ * where a method reports failure that way).
+ */
 public class GetWebData {
-    private static final String MOVIE_DB_BASE = "https://api.themoviedb.org/3/discover/";
-    private static final String MOVIE_DB_BASE_VIDEO = "https://api.themoviedb.org/3/movie/";
-    private static final String IMAGE_BASE = "https://www.googleapis.com/youtube/v3/videos?id=";
+    private static final String TAG = "GetWebData";
+    private static final String MOVIE_DB_API = "https://api.themoviedb.org/3/";
+    private static final String YOUTUBE_API = "https://www.googleapis.com/youtube/v3/";
+    // The changes feed only accepts a window of up to 14 days
+    public static final int CHANGES_MAX_DAYS = 14;
+    private static final int CHANGES_MAX_PAGES = 10;
+    // TMDB serves reviews this many to a page
+    public static final int REVIEWS_PAGE_SIZE = 20;
     private static final String IMAGE_END = "&part=snippet,contentDetails,statistics,status";
+    private static final OkHttpClient client = new OkHttpClient();
+    // API roots, swapped for a local server by the latency harness
+    private static volatile String movieDbRoot = MOVIE_DB_API;
+    private static volatile String youtubeRoot = YOUTUBE_API;
+    // A local server answers whatever the device's connectivity
+    private static volatile boolean localRoots;
+    // Waited for when a 429 doesn't say how long
+    private static final long DEFAULT_RETRY_AFTER_MS = 30_000;
+    // Per API host, the SystemClock.elapsedRealtime() before which calls aren't made after a 429
+    private static final Map<String, Long> retryAt = new ConcurrentHashMap<>();
     private final String[] terms = {"movie", "tv"};
+    private final LoadScope scope;
+    private final MovieDao movieDao;
 
-    public List<MovieDetails> getMovieDetails(String key) {
+    // All calls made through this instance are cancelled when the scope closes
+    public GetWebData(LoadScope scope, MovieDao movieDao) {
+        this.scope = scope;
+        this.movieDao = movieDao;
+    }
+
+    /**
+     * Point every instance at other API roots; null restores the real TMDB or YouTube root.
+     * Roots end with a slash, e.g. a local server's "http://localhost:1234/3/".
+     */
+    @VisibleForTesting
+    public static void setApiRoots(String movieDb, String youtube) {
+        movieDbRoot = movieDb == null ? MOVIE_DB_API : movieDb;
+        youtubeRoot = youtube == null ? YOUTUBE_API : youtube;
+        localRoots = movieDb != null || youtube != null;
+    }
+
+    /**
+     * Every call goes through here, so a 429 holds back all calls to that host for as long as
+     * its Retry-After asked. Error responses throw, so no path ingests an error body and the
+     * rows already stored stay as they were.
+     */
+    private String fetch(Request request) throws IOException {
+        String host = request.url().host();
+        Long until = retryAt.get(host);
+        long now = SystemClock.elapsedRealtime();
+        if (until != null && until > now) {
+            throw new LoadScope.HttpException(429, until - now, "Rate limited by " + host);
+        }
+        try {
+            return scope.fetch(client, request);
+        } catch (LoadScope.HttpException e) {
+            if (e.code == 429) {
+                long wait = e.retryAfterMs > 0 ? e.retryAfterMs : DEFAULT_RETRY_AFTER_MS;
+                retryAt.put(host, SystemClock.elapsedRealtime() + wait);
+                AppLog.w(TAG, "Rate limited by " + host + " for " + wait + "ms");
+            }
+            throw e;
+        }
+    }
+
+    // Whether calls should be skipped rather than left to fail on a socket timeout
+    public static boolean isOffline() {
+        ConnectivityMonitor monitor = ConnectivityMonitor.get();
+        return !localRoots && monitor != null && !monitor.isOnline();
+    }
+
+    // The rows a discover refresh ingested, and whether every feed made it in
+    public static class Discover {
+        public final List<MovieDetails> ingested;
+        public final boolean complete;
+
+        Discover(List<MovieDetails> ingested, boolean complete) {
+            this.ingested = ingested;
+            this.complete = complete;
+        }
+    }
 
-            for (int i = 0; i < 2; i++) {
+    /**
+     * Refresh both discover feeds. A feed that fails is logged and skipped, so the result may be
+     * partial; only a complete result means the catalogue is current.
+     */
+    public Discover getMovieDetails(String key) {
+            MainThreadGuard.assertBackground("GetWebData.getMovieDetails");
+            List<MovieDetails> ingested = new ArrayList<>();
+            if (isOffline()) {
+                return new Discover(ingested, false);
+            }
+            int feedsIngested = 0;
+
+            for (int i = 0; i < 2 && !scope.isClosed(); i++) {
                 try {
-                    String url = MOVIE_DB_BASE + terms[i] + "?api_key=" + key;
-                    Log.i("TAG", "URL: " + url);
-                    OkHttpClient client = new OkHttpClient();
+                    String url = movieDbRoot + "discover/" + terms[i] + "?api_key=" + key;
+                    AppLog.d(TAG, () -> "URL: " + url);
                     Request request = new Request.Builder()
                             .url(url)
                             .get()
                             .build();
-                    Response response = client.newCall(request).execute();
-                    Gson gson = new GsonBuilder()
-                            .setFieldNamingPolicy(FieldNamingPolicy.LOWER_CASE_WITH_UNDERSCORES)
-                            .create();
-                    JSONObject jsonObject = new JSONObject(Objects.requireNonNull(response.body()).string());
+                    JSONObject jsonObject = new JSONObject(fetch(request));
                     JSONArray arr = jsonObject.getJSONArray("results");
-                    for (int j = 0; j < arr.length(); j++) {
+                    List<MovieDetails> page = new ArrayList<>(arr.length());
+                    for (int j = 0; j < arr.length() && !scope.isClosed(); j++) {
                         MovieDetails movieDetails = new MovieDetails(false, false, false, 0, 0, 0, "test", "test", 0, "test", "test'", "test'");
                         movieDetails.setId(arr.getJSONObject(j).getInt("id"));
                         movieDetails.setVoteCount(arr.getJSONObject(j).getInt("vote_count"));
@@ -62,30 +154,187 @@ public class GetWebData {
                             movieDetails.setReleaseDate(arr.getJSONObject(j).getString("first_air_date"));
                             movieDetails.setTitle(arr.getJSONObject(j).getString("name"));
                         }
-                        movieDao.insertAll(movieDetails);
-                        MovieDetails testDetails = movieDao.loadMovieID(arr.getJSONObject(j).getInt("id"));
-                        Log.i("TAG TESTDETAILS", testDetails.getReleaseDate());
+                        page.add(movieDetails);
+                    }
+                    // One transaction per page rather than one per row; discover rows carry no
+                    // favorite state, so whatever the user marked is kept
+                    if (!scope.isClosed()) {
+                        movieDao.insertKeepingFavorites(page);
+                        ingested.addAll(page);
+                        feedsIngested++;
                     }
                 } catch (Exception e) {
-                    e.printStackTrace();
+                    AppLog.w(TAG, "Discover " + terms[i] + " failed", e);
+                }
+            }
+
+        return new Discover(ingested, feedsIngested == terms.length);
+    }
+
+    /**
+     * Get the ids that changed on TMDB since the given date for one discover term.
+     *
+     * @param key       The TMDB api key.
+     * @param term      "movie" or "tv", matching the discover feed the rows came from.
+     * @param startDate yyyy-MM-dd, no more than {@link #CHANGES_MAX_DAYS} days ago.
+     * @return The changed ids, or null if the feed could not be read.
+     */
+    public Set<Integer> getChangedIds(String key, String term, String startDate) {
+        MainThreadGuard.assertBackground("GetWebData.getChangedIds");
+        if (isOffline()) {
+            return null;
+        }
+        Set<Integer> ids = new HashSet<>();
+        try {
+            int totalPages = 1;
+            for (int page = 1; page <= totalPages && page <= CHANGES_MAX_PAGES && !scope.isClosed(); page++) {
+                String url = movieDbRoot + term + "/changes?api_key=" + key + "&start_date=" + startDate + "&page=" + page;
+                Request request = new Request.Builder()
+                        .url(url)
+                        .get()
+                        .build();
+                JSONObject jsonObject = new JSONObject(fetch(request));
+                totalPages = jsonObject.optInt("total_pages", 1);
+                JSONArray arr = jsonObject.getJSONArray("results");
+                for (int j = 0; j < arr.length(); j++) {
+                    ids.add(arr.getJSONObject(j).getInt("id"));
                 }
             }
+        } catch (Exception e) {
+            AppLog.w(TAG, "Changes feed for " + term + " failed", e);
+            return null;
+        }
+        return ids;
+    }
+
+    /**
+     * Re-read one row from TMDB, keeping its local favorite/popular/top rated flags.
+     *
+     * @return False if the row could not be refreshed, true if it was or is no longer stored.
+     */
+    public boolean refreshMovieDetails(String key, String term, int id) {
+        MainThreadGuard.assertBackground("GetWebData.refreshMovieDetails");
+        if (isOffline()) {
+            return false;
+        }
+        MovieDetails movieDetails = movieDao.loadMovieID(id);
+        if (movieDetails == null) {
+            return true;
+        }
+        try {
+            String url = movieDbRoot + term + "/" + id + "?api_key=" + key;
+            Request request = new Request.Builder()
+                    .url(url)
+                    .get()
+                    .build();
+            JSONObject obj = new JSONObject(fetch(request));
+            movieDetails.setVoteCount(obj.getInt("vote_count"));
+            movieDetails.setPopularity(obj.getInt("popularity"));
+            movieDetails.setOverview(obj.getString("overview"));
+            movieDetails.setVoteAverage(obj.getInt("vote_average"));
+            movieDetails.setPosterPath(obj.getString("poster_path"));
+            if (term.equals(terms[0])) {
+                movieDetails.setTitle(obj.getString("title"));
+                movieDetails.setReleaseDate(obj.getString("release_date"));
+            } else {
+                movieDetails.setTitle(obj.getString("name"));
+                movieDetails.setReleaseDate(obj.getString("first_air_date"));
+            }
+            if (scope.isClosed()) {
+                return false;
+            }
+            movieDao.insertKeepingFavorites(Collections.singletonList(movieDetails));
+            return true;
+        } catch (Exception e) {
+            if (e instanceof LoadScope.HttpException && ((LoadScope.HttpException) e).code == 404) {
+                // Gone from TMDB; the stored row stays as it was
+                return true;
+            }
+            AppLog.w(TAG, "Refresh of " + id + " failed", e);
+            return false;
+        }
+    }
 
-        return movieDao.getAll();
+    /**
+     * Search TMDB for movies and tv shows matching the query and ingest the hits.
+     *
+     * Hits already in the catalogue keep their favorite/popular/top rated flags; new ones are
+     * stored without flags, so they can be opened from the results but stay off the grids.
+     *
+     * @return The ingested rows in TMDB's relevance order, or null if the search failed.
+     */
+    public List<MovieDetails> searchMulti(String key, String query) {
+        MainThreadGuard.assertBackground("GetWebData.searchMulti");
+        if (isOffline()) {
+            return null;
+        }
+        List<MovieDetails> results = new ArrayList<>();
+        try {
+            String url = movieDbRoot + "search/multi?api_key=" + key
+                    + "&query=" + URLEncoder.encode(query, "UTF-8");
+            Request request = new Request.Builder()
+                    .url(url)
+                    .get()
+                    .build();
+            JSONArray arr = new JSONObject(fetch(request)).getJSONArray("results");
+            List<Integer> ids = new ArrayList<>();
+            for (int j = 0; j < arr.length(); j++) {
+                ids.add(arr.getJSONObject(j).getInt("id"));
+            }
+            Map<Integer, MovieDetails> existing = new HashMap<>();
+            for (MovieDetails movieDetails : movieDao.loadMovieIDs(ids)) {
+                existing.put(movieDetails.getId(), movieDetails);
+            }
+            for (int j = 0; j < arr.length() && !scope.isClosed(); j++) {
+                JSONObject obj = arr.getJSONObject(j);
+                String mediaType = obj.optString("media_type");
+                // People have no poster in the grid's sense, and tiles without a poster can't be drawn
+                if (!(mediaType.equals(terms[0]) || mediaType.equals(terms[1])) || obj.isNull("poster_path")) {
+                    continue;
+                }
+                MovieDetails movieDetails = existing.get(obj.getInt("id"));
+                if (movieDetails == null) {
+                    movieDetails = new MovieDetails(false, false, false, obj.getInt("id"), 0, 0, "", "", 0, "", "", "");
+                }
+                movieDetails.setVoteCount(obj.optInt("vote_count"));
+                movieDetails.setPopularity(obj.optInt("popularity"));
+                movieDetails.setOverview(obj.optString("overview"));
+                movieDetails.setVoteAverage(obj.optInt("vote_average"));
+                movieDetails.setPosterPath(obj.getString("poster_path"));
+                if (mediaType.equals(terms[0])) {
+                    movieDetails.setTitle(obj.optString("title"));
+                    movieDetails.setReleaseDate(obj.optString("release_date"));
+                } else {
+                    movieDetails.setTitle(obj.optString("name"));
+                    movieDetails.setReleaseDate(obj.optString("first_air_date"));
+                }
+                results.add(movieDetails);
+            }
+            movieDao.insertKeepingFavorites(results);
+        } catch (Exception e) {
+            // A superseded search is cancelled on purpose
+            if (!(e instanceof LoadScope.CancelledException)) {
+                AppLog.w(TAG, "Search failed", e);
+            }
+            return null;
+        }
+        return results;
     }
 
     public List<VideoDetails> getVideoDetails(String movieKey, String youtubeKey, int id) {
-        OkHttpClient client = new OkHttpClient();
+        MainThreadGuard.assertBackground("GetWebData.getVideoDetails");
+        if (isOffline()) {
+            return movieDao.getVideosDetails(id);
+        }
         try {
-            String videoUrl = MOVIE_DB_BASE_VIDEO + id + "/videos?api_key=" + movieKey;
+            String videoUrl = movieDbRoot + "movie/" + id + "/videos?api_key=" + movieKey;
             Request request = new Request.Builder()
                     .url(videoUrl)
                     .get()
                     .build();
-            Response videoResponse = client.newCall(request).execute();
-            JSONObject videoJsonObject = new JSONObject(Objects.requireNonNull(videoResponse.body()).string());
+            JSONObject videoJsonObject = new JSONObject(fetch(request));
             JSONArray arr = videoJsonObject.getJSONArray("results");
-            for (int j = 0; j < arr.length(); j++) {
+            for (int j = 0; j < arr.length() && !scope.isClosed(); j++) {
                 VideoDetails videoDetails = new VideoDetails(0, "", "", "",
                         "", "", "");
                 videoDetails.setId(id);
@@ -96,14 +345,13 @@ public class GetWebData {
                 videoDetails.setSize(arr.getJSONObject(j).getString("size"));
                 videoDetails.setType(arr.getJSONObject(j).getString("type"));
                 if (videoDetails.getType().equals("Trailer")) {
-                    String youtubeUrl = IMAGE_BASE + videoDetails.getKey() + "&key=" + youtubeKey + IMAGE_END;
-                    Log.i("TAG VIDEOREVIEWDETAILS", "YOUTUBEURL" + youtubeUrl);
+                    String youtubeUrl = youtubeRoot + "videos?id=" + videoDetails.getKey() + "&key=" + youtubeKey + IMAGE_END;
+                    AppLog.d(TAG, () -> "YOUTUBEURL" + youtubeUrl);
                     Request youTubeRequest = new Request.Builder()
                             .url(youtubeUrl)
                             .get()
                             .build();
-                    Response youTubeResponse = client.newCall(youTubeRequest).execute();
-                    JSONObject obj = new JSONObject(Objects.requireNonNull(youTubeResponse.body()).string());
+                    JSONObject obj = new JSONObject(fetch(youTubeRequest));
                     JSONArray imageArr = obj.getJSONArray("items");
                     String image = imageArr.getJSONObject(0).getJSONObject("snippet").getJSONObject("thumbnails").getJSONObject("medium").getString("url");
                     videoDetails.setImageURL(image);
@@ -111,36 +359,60 @@ public class GetWebData {
                 }
             }
         } catch (Exception e) {
-            e.printStackTrace();
+            AppLog.w(TAG, "Videos for " + id + " failed", e);
         }
         return movieDao.getVideosDetails(id);
     }
 
-    public List<ReviewDetails> getReviewDetails(String movieKey, int id) {
-        Log.i("TAG REVIEWDETAILS", "MOVIEDAO" + movieDao.loadVideo(id));
-        OkHttpClient client = new OkHttpClient();
+    // One page of a movie's reviews and how many pages TMDB has in total
+    public static class ReviewPage {
+        public final List<ReviewDetails> reviews;
+        public final int totalPages;
+
+        ReviewPage(List<ReviewDetails> reviews, int totalPages) {
+            this.reviews = reviews;
+            this.totalPages = totalPages;
+        }
+    }
+
+    /**
+     * Fetch and store one page of a movie's reviews.
+     *
+     * @param page The 1-based page to read.
+     * @return The page, or null if it could not be read.
+     */
+    public ReviewPage getReviewPage(String movieKey, int id, int page) {
+        MainThreadGuard.assertBackground("GetWebData.getReviewPage");
+        if (isOffline()) {
+            return null;
+        }
         try {
-            String reviewUrl = MOVIE_DB_BASE_VIDEO + id + "/reviews?api_key=" + movieKey;
+            String reviewUrl = movieDbRoot + "movie/" + id + "/reviews?api_key=" + movieKey + "&page=" + page;
             Request reviewRequest = new Request.Builder()
                     .url(reviewUrl)
                     .get()
                     .build();
-            Response reviewResponse = client.newCall(reviewRequest).execute();
-            JSONObject reviewJsonObject = new JSONObject(Objects.requireNonNull(reviewResponse.body()).string());
+            JSONObject reviewJsonObject = new JSONObject(fetch(reviewRequest));
             JSONArray reviewArr = reviewJsonObject.getJSONArray("results");
+            List<ReviewDetails> reviews = new ArrayList<>();
             for (int j = 0; j < reviewArr.length(); j++) {
                 ReviewDetails reviewDetails = new ReviewDetails(0,"","");
                 reviewDetails.setReviewId(id);
                 reviewDetails.setAuthor(reviewArr.getJSONObject(j).getString("author"));
                 reviewDetails.setContent(reviewArr.getJSONObject(j).getString("content"));
-                movieDao.insertReviewDetails(reviewDetails);
-                List<ReviewDetails> test = movieDao.getReviewDetails(id);
-                Log.i("TAG GETDATA REVIEW", test.get(0).getAuthor());
+                reviews.add(reviewDetails);
+            }
+            if (scope.isClosed()) {
+                return null;
             }
+            int totalPages = reviewJsonObject.optInt("total_pages", page);
+            movieDao.insertReviewDetails(reviews);
+            movieDao.insertReviewProgress(new ReviewProgress(id, page, totalPages));
+            return new ReviewPage(reviews, totalPages);
         } catch (Exception e) {
-            e.printStackTrace();
+            AppLog.w(TAG, "Reviews page " + page + " for " + id + " failed", e);
+            return null;
         }
-        return movieDao.getReviewDetails(id);
     }
 }
 
@@ -0,0 +1,273 @@
+package gemenielabs.movies;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+
+import com.squareup.picasso.OkHttp3Downloader;
+import com.squareup.picasso.Picasso;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import gemenielabs.movies.Database.MovieDetails;
+import okhttp3.Cache;
+import okhttp3.Call;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSink;
+import okio.Okio;
+
+/**
+ * Disk storage for every image Picasso loads (posters and trailer thumbnails).
+ *
+ * Images go through an LRU HTTP cache sized from the {@link StorageBudget}. Favorite posters
+ * are also pinned: copied to a directory the LRU never evicts, and served from there whenever
+ * the network or the HTTP cache can't provide them, so favorites still show offline.
+ */
+public class ImageDiskCache {
+
+    private static final String TAG = "ImageDiskCache";
+    private static final String CACHE_DIR = "images";
+    private static final String PINNED_DIR = "pinned_posters";
+    private static final String POSTER_HOST = "image.tmdb.org";
+
+    // Snapshot of disk cache use
+    public static class Stats {
+        public final long cacheBytes;
+        public final long cacheMaxBytes;
+        public final long pinnedBytes;
+        public final int requests;
+        public final int cacheHits;
+        public final int pinnedHits;
+
+        Stats(Cache cache, long pinnedBytes, int pinnedHits) {
+            long size;
+            try {
+                size = cache.size();
+            } catch (IOException e) {
+                size = -1;
+            }
+            cacheBytes = size;
+            cacheMaxBytes = cache.maxSize();
+            this.pinnedBytes = pinnedBytes;
+            requests = cache.requestCount();
+            cacheHits = cache.hitCount();
+            this.pinnedHits = pinnedHits;
+        }
+
+        // Share of image requests answered without the network
+        public float hitRate() {
+            return requests == 0 ? 0f : (float) (cacheHits + pinnedHits) / requests;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return "disk " + cacheBytes + "/" + cacheMaxBytes + " bytes, " + pinnedBytes + " pinned, "
+                    + cacheHits + "+" + pinnedHits + " hits of " + requests + " requests";
+        }
+    }
+
+    private static ImageDiskCache sInstance;
+
+    private final Context mContext;
+    private final File mPinnedDir;
+    private final AtomicInteger mPinnedHits = new AtomicInteger();
+    // Pin and unpin run in order, so a quick favorite/unfavorite settles on the last state
+    private final ExecutorService mPinWriter = Executors.newSingleThreadExecutor();
+    // Built on mPinWriter ahead of any pin work, since sizing the cache means listing the pins
+    private final Future<OkHttpClient> mClient;
+
+    private ImageDiskCache(Context context) {
+        mContext = context;
+        mPinnedDir = new File(context.getFilesDir(), PINNED_DIR);
+        mClient = mPinWriter.submit(this::createClient);
+    }
+
+    /**
+     * Route the given Picasso builder's downloads through the cache, which is opened in the
+     * background. Call once from Application.onCreate, before the Picasso singleton is built.
+     */
+    public static void install(Context context, Picasso.Builder builder) {
+        sInstance = new ImageDiskCache(context.getApplicationContext());
+        builder.downloader(new OkHttp3Downloader((Call.Factory) sInstance::newCall));
+    }
+
+    public static ImageDiskCache get() {
+        return sInstance;
+    }
+
+    // Call off the main thread
+    public Stats getStats() {
+        return new Stats(client().cache(), pinnedBytes(), mPinnedHits.get());
+    }
+
+    // Keep a copy of the poster that survives cache eviction
+    public void pin(final String posterPath) {
+        if (posterPath == null) {
+            return;
+        }
+        mPinWriter.execute(() -> download(posterPath));
+    }
+
+    public void unpin(final String posterPath) {
+        if (posterPath == null) {
+            return;
+        }
+        mPinWriter.execute(() -> pinnedFile(posterPath).delete());
+    }
+
+    /**
+     * Bring the pinned directory in line with the favorites: download any that are missing and
+     * delete pins for movies that are no longer favorites.
+     */
+    public void reconcile(final List<MovieDetails> favorites) {
+        final Set<String> wanted = new HashSet<>();
+        for (MovieDetails movieDetails : favorites) {
+            if (movieDetails.getPosterPath() != null) {
+                wanted.add(pinnedFile(movieDetails.getPosterPath()).getName());
+            }
+        }
+        mPinWriter.execute(() -> {
+            File[] files = mPinnedDir.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    if (!wanted.contains(file.getName())) {
+                        file.delete();
+                    }
+                }
+            }
+            for (MovieDetails movieDetails : favorites) {
+                String posterPath = movieDetails.getPosterPath();
+                if (posterPath != null && !pinnedFile(posterPath).exists()) {
+                    download(posterPath);
+                }
+            }
+        });
+    }
+
+    // Fetch the poster at the largest size the app draws it, through the HTTP cache
+    private void download(String posterPath) {
+        File target = pinnedFile(posterPath);
+        File partial = new File(mPinnedDir, target.getName() + ".part");
+        Request request = new Request.Builder()
+                .url(PosterSize.forDetails(mContext).url(posterPath))
+                .build();
+        try (Response response = client().newCall(request).execute()) {
+            ResponseBody body = response.body();
+            if (!response.isSuccessful() || body == null) {
+                return;
+            }
+            try (BufferedSink sink = Okio.buffer(Okio.sink(partial))) {
+                sink.writeAll(body.source());
+            }
+            if (!partial.renameTo(target)) {
+                partial.delete();
+            }
+        } catch (IOException e) {
+            partial.delete();
+            AppLog.w(TAG, "Could not pin " + posterPath, e);
+        }
+    }
+
+    // The LRU cache gets what the budget leaves once the pins already on disk are paid for
+    private OkHttpClient createClient() {
+        mPinnedDir.mkdirs();
+        long cacheBytes = StorageBudget.get(mContext).imageCacheBytes(pinnedBytes());
+        return new OkHttpClient.Builder()
+                .cache(new Cache(new File(mContext.getCacheDir(), CACHE_DIR), cacheBytes))
+                .addInterceptor(new PinnedInterceptor())
+                .build();
+    }
+
+    // Picasso only downloads on its own threads, so waiting here for the cache never blocks the UI
+    private Call newCall(Request request) {
+        return client().newCall(request);
+    }
+
+    private OkHttpClient client() {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return mClient.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("Could not open the image cache", e.getCause());
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private File pinnedFile(String posterPath) {
+        return new File(mPinnedDir, posterPath.substring(posterPath.lastIndexOf('/') + 1));
+    }
+
+    private long pinnedBytes() {
+        long bytes = 0;
+        File[] files = mPinnedDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                bytes += file.length();
+            }
+        }
+        return bytes;
+    }
+
+    // Falls back to a pinned copy when the network fails or a cache-only request misses
+    private class PinnedInterceptor implements Interceptor {
+        @NonNull
+        @Override
+        public Response intercept(@NonNull Chain chain) throws IOException {
+            Request request = chain.request();
+            // Only posters are pinned; trailer thumbnails rely on the LRU cache alone
+            File pinned = POSTER_HOST.equals(request.url().host())
+                    ? pinnedFile(request.url().encodedPath()) : null;
+            Response response;
+            try {
+                response = chain.proceed(request);
+            } catch (IOException e) {
+                if (pinned == null || !pinned.exists()) {
+                    throw e;
+                }
+                return fromPinned(request, pinned);
+            }
+            // 504 is OkHttp's answer to an only-if-cached request the cache can't serve
+            if (response.code() == 504 && pinned != null && pinned.exists()) {
+                response.close();
+                return fromPinned(request, pinned);
+            }
+            return response;
+        }
+
+        private Response fromPinned(Request request, File pinned) throws IOException {
+            mPinnedHits.incrementAndGet();
+            return new Response.Builder()
+                    .request(request)
+                    .protocol(Protocol.HTTP_1_1)
+                    .code(200)
+                    .message("OK")
+                    .body(ResponseBody.create(Okio.buffer(Okio.source(pinned)), MediaType.get("image/jpeg"), pinned.length()))
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package gemenielabs.movies;
+
+
+import android.app.Application;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.AndroidViewModel;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+import androidx.lifecycle.SavedStateHandle;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import gemenielabs.movies.Database.MovieDao;
+import gemenielabs.movies.Database.MovieDatabase;
+import gemenielabs.movies.Database.MovieDetails;
+import gemenielabs.movies.Database.MovieWithDetails;
+import gemenielabs.movies.Database.ReviewDetails;
+import gemenielabs.movies.Database.VideoDetails;
+
+/**
+ * Owns the details screen's movie, trailers and reviews.
+ *
+ * The movie id is read from the SavedStateHandle, which is seeded with the launching intent's
+ * extras and restored after process death. Data is loaded once per ViewModel, in a single
+ * read of the movie with its trailers and reviews, so rotating DetailsActivity rebinds from memory.
+ */
+public class LiveDataDetailsModel extends AndroidViewModel implements FavoriteStore.Listener {
+
+    private final int mMovieId;
+    private final MovieDao mMovieDao;
+    private final LoadScope mLoadScope = new LoadScope();
+    private final MutableLiveData<MovieItem> mMovie = new MutableLiveData<>();
+    private final MutableLiveData<List<VideoDetails>> mVideos = new MutableLiveData<>();
+    private final MutableLiveData<List<ReviewItem>> mReviews = new MutableLiveData<>();
+    private boolean mStarted;
+    // Next review page to fetch, or 0 once the last page is in
+    private int mNextReviewPage;
+    private boolean mLoadingReviews;
+
+    public LiveDataDetailsModel(@NonNull Application application, @NonNull SavedStateHandle state) {
+        super(application);
+        Integer movieId = state.get(MainActivity.MOVIE_ID);
+        mMovieId = movieId == null ? 0 : movieId;
+        mMovieDao = MovieDatabase.getInstance(application).movieDao();
+        // The grid passes the row it already holds, so the header renders without a DB read
+        if (state.contains(MainActivity.POSTER_PATH)) {
+            Boolean favorite = state.get(MainActivity.IS_FAVORITE);
+            Integer voteAverage = state.get(MainActivity.VOTE_AVERAGE);
+            MovieDetails movie = new MovieDetails(Boolean.TRUE.equals(favorite), false, false, mMovieId, 0, 0,
+                    state.get(MainActivity.TITLE), state.get(MainActivity.OVERVIEW),
+                    voteAverage == null ? 0 : voteAverage, state.get(MainActivity.RELEASE_DATE),
+                    state.get(MainActivity.POSTER_PATH), null);
+            // Only the grid poster URL is left unset; the details screen loads its own sizes
+            mMovie.setValue(new MovieItem(movie, null,
+                    state.get(MainActivity.RATING_TEXT), state.get(MainActivity.RELEASE_DATE_TEXT)));
+        }
+        FavoriteStore.getInstance(application).addListener(this);
+    }
+
+    public LiveData<MovieItem> getMovie() {
+        return mMovie;
+    }
+
+    /**
+     * Get the LiveData object for video reviews.
+     *
+     * @return The LiveData object for video reviews.
+     */
+    public LiveData<List<VideoDetails>> getVideos() {
+        return mVideos;
+    }
+
+    /**
+     * Get the LiveData object for reviews. Each page loaded adds to the end of the list.
+     *
+     * @return The LiveData object for reviews.
+     */
+    public LiveData<List<ReviewItem>> getReviews() {
+        return mReviews;
+    }
+
+    /**
+     * Load the movie with its stored trailers and reviews in one transaction and publish them
+     * together, once per ViewModel. Trailers or a first review page missing from the database
+     * are then fetched.
+     */
+    public void start() {
+        if (mStarted) {
+            return;
+        }
+        mStarted = true;
+        final MovieItem seeded = mMovie.getValue();
+        // The grid may have started this read when the tile was pressed
+        final Future<MovieWithDetails> prefetched = DetailsPrefetcher.getInstance(getApplication()).take(mMovieId);
+        // A favorite change still waiting to be written isn't in the row yet
+        final MovieDetails unwritten = unwrittenChange();
+        mLoadingReviews = true;
+        mLoadScope.execute(() -> {
+            MovieWithDetails stored = awaitPrefetch(prefetched);
+            if (stored == null) {
+                stored = mMovieDao.loadMovieWithDetails(mMovieId);
+            }
+            MovieDetails movie = stored == null ? null : stored.movie;
+            if (movie != null && unwritten != null) {
+                movie = movie.withFavorite(unwritten.isFavorite());
+            }
+            final MovieItem movieItem = movie == null ? null
+                    : new MovieItem.Formatter(getApplication()).format(movie);
+            final List<VideoDetails> videos = stored == null ? new ArrayList<VideoDetails>() : stored.videos;
+            List<ReviewDetails> reviews = stored == null ? new ArrayList<ReviewDetails>() : stored.reviews;
+            final List<ReviewItem> reviewItems = toItems(reviews);
+            final int nextPage = nextReviewPage(stored);
+            mLoadScope.post(() -> {
+                // Keep a favorite toggled while the row was loading
+                if (movieItem != null && mMovie.getValue() == seeded) {
+                    mMovie.setValue(movieItem);
+                }
+                mVideos.setValue(videos);
+                mNextReviewPage = nextPage;
+                mLoadingReviews = false;
+                appendReviews(reviewItems);
+                if (videos.isEmpty()) {
+                    mLoadScope.execute(this::fetchVideos);
+                }
+                if (reviewItems.isEmpty()) {
+                    loadMoreReviews();
+                }
+            });
+        });
+    }
+
+    // Where the stored reviews leave off, so a movie with none or all of them isn't refetched
+    private static int nextReviewPage(MovieWithDetails stored) {
+        if (stored == null) {
+            return 1;
+        }
+        if (stored.reviewProgress != null) {
+            return stored.reviewProgress.nextPage();
+        }
+        // Reviews stored before progress was recorded are whole pages; a short last page is the end
+        int size = stored.reviews.size();
+        return size % GetWebData.REVIEWS_PAGE_SIZE == 0 ? size / GetWebData.REVIEWS_PAGE_SIZE + 1 : 0;
+    }
+
+    // The latest change to this movie that FavoriteStore hasn't stored yet, or null
+    private MovieDetails unwrittenChange() {
+        MovieDetails latest = null;
+        for (MovieDetails movie : FavoriteStore.getInstance(getApplication()).unwritten()) {
+            if (movie.getId() == mMovieId) {
+                latest = movie;
+            }
+        }
+        return latest;
+    }
+
+    // The prefetched read's result, or null if there was none or it didn't complete
+    private static MovieWithDetails awaitPrefetch(Future<MovieWithDetails> prefetched) {
+        if (prefetched == null) {
+            return null;
+        }
+        try {
+            return prefetched.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException | CancellationException e) {
+            return null;
+        }
+    }
+
+    // Fetch trailers missing from the database; runs in the background
+    private void fetchVideos() {
+        if (GetWebData.isOffline()) {
+            // The screen shows without trailers for now; fetch them once back online
+            mLoadScope.post(() -> ConnectivityMonitor.get().defer(videosKey(),
+                    ConnectivityMonitor.PRIORITY_DETAILS, () -> mLoadScope.execute(this::fetchVideos)));
+            return;
+        }
+        Application app = getApplication();
+        List<VideoDetails> videoDetails = new GetWebData(mLoadScope, mMovieDao).getVideoDetails(
+                app.getString(R.string.moviedb_api_key), app.getString(R.string.google_youtube_api_key), mMovieId);
+        if (!mLoadScope.isClosed() && !videoDetails.isEmpty()) {
+            mVideos.postValue(videoDetails);
+        }
+    }
+
+    /**
+     * Fetch the next page of reviews, if there is one and none is already loading. Call from
+     * the main thread as the review list nears its end.
+     */
+    public void loadMoreReviews() {
+        if (mLoadingReviews || mNextReviewPage == 0) {
+            return;
+        }
+        mLoadingReviews = true;
+        final int page = mNextReviewPage;
+        mLoadScope.execute(() -> {
+            GetWebData.ReviewPage reviewPage = new GetWebData(mLoadScope, mMovieDao)
+                    .getReviewPage(getApplication().getString(R.string.moviedb_api_key), mMovieId, page);
+            final List<ReviewItem> items = reviewPage == null ? null : toItems(reviewPage.reviews);
+            mLoadScope.post(() -> {
+                mLoadingReviews = false;
+                if (reviewPage == null) {
+                    // Leave the page to be retried on the next scroll, or once back online
+                    if (GetWebData.isOffline()) {
+                        ConnectivityMonitor.get().defer(reviewsKey(), ConnectivityMonitor.PRIORITY_REVIEWS,
+                                this::loadMoreReviews);
+                    }
+                    return;
+                }
+                mNextReviewPage = page < reviewPage.totalPages ? page + 1 : 0;
+                appendReviews(items);
+            });
+        });
+    }
+
+    // Build previews in the background so binding a review never formats text
+    private static List<ReviewItem> toItems(List<ReviewDetails> reviews) {
+        List<ReviewItem> items = new ArrayList<>(reviews.size());
+        for (ReviewDetails reviewDetails : reviews) {
+            items.add(ReviewItem.from(reviewDetails));
+        }
+        return items;
+    }
+
+    // Publish a new list with the page appended, leaving the previous list untouched for the adapter
+    private void appendReviews(List<ReviewItem> items) {
+        List<ReviewItem> current = mReviews.getValue();
+        List<ReviewItem> next = new ArrayList<>(current == null ? 0 : current.size() + items.size());
+        if (current != null) {
+            next.addAll(current);
+        }
+        next.addAll(items);
+        mReviews.setValue(next);
+    }
+
+    /**
+     * Add or remove the movie from favorites. The screen updates at once; the write is left to
+     * {@link FavoriteStore}, which outlives the screen and coalesces rapid taps.
+     */
+    public void toggleFavorite() {
+        MovieItem movieItem = mMovie.getValue();
+        if (movieItem == null) {
+            return;
+        }
+        MovieItem toggled = movieItem.withFavorite(!movieItem.movie.isFavorite());
+        mMovie.setValue(toggled);
+        FavoriteStore.getInstance(getApplication()).setFavorite(toggled.movie);
+    }
+
+    // Follows changes made elsewhere, and reverts when FavoriteStore could not store the toggle
+    @Override
+    public void onFavoriteChanged(MovieDetails movie) {
+        MovieItem movieItem = mMovie.getValue();
+        if (movie.getId() != mMovieId || movieItem == null || movieItem.movie.isFavorite() == movie.isFavorite()) {
+            return;
+        }
+        mMovie.setValue(movieItem.withFavorite(movie.isFavorite()));
+    }
+
+    // Keys of this movie's refreshes deferred until the device is back online
+    private String videosKey() {
+        return "videos:" + mMovieId;
+    }
+
+    private String reviewsKey() {
+        return "reviews:" + mMovieId;
+    }
+
+    @Override
+    protected void onCleared() {
+        FavoriteStore.getInstance(getApplication()).removeListener(this);
+        ConnectivityMonitor.get().cancel(videosKey());
+        ConnectivityMonitor.get().cancel(reviewsKey());
+        mLoadScope.close();
+    }
+}
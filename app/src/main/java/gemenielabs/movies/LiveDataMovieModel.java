@@ -1,28 +1,213 @@
 package gemenielabs.movies;
 
 
+import android.app.Application;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.preference.PreferenceManager;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.AndroidViewModel;
+import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
-import androidx.lifecycle.ViewModel;
+import androidx.lifecycle.SavedStateHandle;
 
+import java.util.ArrayList;
 import java.util.List;
 
+import gemenielabs.movies.Database.MovieDao;
+import gemenielabs.movies.Database.MovieDatabase;
 import gemenielabs.movies.Database.MovieDetails;
 
-public class LiveDataMovieModel extends ViewModel {
+/**
+ * Owns the poster grid's data and loading state.
+ *
+ * Survives configuration changes, so rotating MainActivity neither refetches nor reloads.
+ * The launch refresh is also skipped while {@link CatalogueSyncWorker} synced recently.
+ * Whether the catalogue was already refreshed and the grid position are kept in the
+ * SavedStateHandle so they also survive process death.
+ *
+ * The grid is composed from a {@link CatalogueSnapshot} loaded in one query. Category filter
+ * changes in shared preferences are debounced and applied to the snapshot, and favorite changes
+ * from {@link FavoriteStore} are patched into it, so neither queries the database.
+ */
+public class LiveDataMovieModel extends AndroidViewModel
+        implements FavoriteStore.Listener, SharedPreferences.OnSharedPreferenceChangeListener {
+
+    private static final String TAG = "LiveDataMovieModel";
+    private static final String REFRESHED = "refreshed";
+    private static final String POSITION = "position";
+    private static final String CATALOGUE_REFRESH = "catalogue";
+    // Switches flipped together in settings are applied as one grid update
+    private static final long FILTER_DELAY_MS = 100;
 
-    private MutableLiveData<List<MovieDetails>> mMovies;
+    private final SavedStateHandle mState;
+    private final MovieDao mMovieDao;
+    private final SharedPreferences mPreferences;
+    private final MovieItem.Formatter mFormatter;
+    private final LoadScope mLoadScope = new LoadScope();
+    private final MutableLiveData<List<MovieItem>> mMovies = new MutableLiveData<>();
+    private final MutableLiveData<Boolean> mLoading = new MutableLiveData<>(false);
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final Runnable mPublish = this::publish;
+    // Rows behind the grid; only touched on the main thread
+    private CatalogueSnapshot mSnapshot = CatalogueSnapshot.EMPTY;
+    // Favorite changes announced while snapshot loads are in flight, for each load to re-apply
+    private final List<MovieDetails> mChangesDuringLoad = new ArrayList<>();
+    private int mLoadsInFlight;
+    private boolean mStarted;
+
+    public LiveDataMovieModel(@NonNull Application application, @NonNull SavedStateHandle state) {
+        super(application);
+        mState = state;
+        mMovieDao = MovieDatabase.getInstance(application).movieDao();
+        mPreferences = PreferenceManager.getDefaultSharedPreferences(application);
+        mFormatter = new MovieItem.Formatter(application);
+        mPreferences.registerOnSharedPreferenceChangeListener(this);
+        FavoriteStore.getInstance(application).addListener(this);
+    }
 
     /**
      * Get the LiveData object for movies.
-     * If it doesn't exist, create a new MutableLiveData instance.
      *
      * @return The LiveData object for movies.
      */
-    public MutableLiveData<List<MovieDetails>> getMovies() {
-        if (mMovies == null) {
-            mMovies = new MutableLiveData<>();
-        }
+    public LiveData<List<MovieItem>> getMovies() {
         return mMovies;
     }
-}
 
+    /**
+     * Get whether a catalogue refresh is in progress.
+     *
+     * @return The LiveData object for the loading state.
+     */
+    public LiveData<Boolean> getLoading() {
+        return mLoading;
+    }
+
+    /**
+     * Load the grid once per ViewModel. Later calls (e.g. after rotation) do nothing, and the
+     * network refresh is skipped entirely if it already ran before a process death.
+     *
+     * Whatever Room already holds is posted first so the grid renders without waiting for the
+     * network; the refreshed rows are then posted again and diffed into place by the adapter.
+     */
+    public void start() {
+        if (mStarted) {
+            return;
+        }
+        mStarted = true;
+        setPosterList();
+        if (Boolean.TRUE.equals(mState.get(REFRESHED)) || CatalogueSyncWorker.isFresh(getApplication())) {
+            return;
+        }
+        // Offline, the grid shows what Room holds and the refresh waits for a network
+        ConnectivityMonitor.get().defer(CATALOGUE_REFRESH, ConnectivityMonitor.PRIORITY_CATALOGUE, this::refresh);
+    }
+
+    // Fetch both discover feeds, then reload the grid
+    private void refresh() {
+        mLoading.setValue(true);
+        mLoadScope.execute(() -> {
+            GetWebData getWebData = new GetWebData(mLoadScope, mMovieDao);
+            GetWebData.Discover discover = getWebData.getMovieDetails(getApplication().getString(R.string.moviedb_api_key));
+            if (!mLoadScope.isClosed()) {
+                warmPosters(discover.ingested);
+                // A partial refresh leaves the catalogue stale, so the next launch tries again
+                if (discover.complete) {
+                    CatalogueSyncWorker.markSynced(getApplication());
+                    mLoadScope.post(() -> mState.set(REFRESHED, true));
+                }
+            }
+            mLoading.postValue(false);
+            mLoadScope.post(this::setPosterList);
+        });
+    }
+
+    // Start fetching fresh posters while the refreshed list is still being queried and diffed
+    private void warmPosters(List<MovieDetails> movies) {
+        List<String> posterPaths = new ArrayList<>(movies.size());
+        for (MovieDetails movie : movies) {
+            posterPaths.add(movie.getPosterPath());
+        }
+        PosterPrefetcher.getInstance(getApplication()).prefetch(posterPaths, PosterSize.forGrid(getApplication()));
+    }
+
+    // Reload the snapshot from the database, then show the categories selected in shared preferences.
+    // Favorite changes the read may have missed are patched back in. Call on the main thread
+    private void setPosterList() {
+        final List<MovieDetails> unwritten = FavoriteStore.getInstance(getApplication()).unwritten();
+        final int changesSeen = mChangesDuringLoad.size();
+        mLoadsInFlight++;
+        mLoadScope.execute(() -> {
+            CatalogueSnapshot loaded = CatalogueSnapshot.of(mMovieDao.loadCatalogue(), mFormatter);
+            // Changes still waiting to be written when the load started
+            for (MovieDetails movie : unwritten) {
+                loaded = loaded.withFavorite(movie, mFormatter);
+            }
+            final CatalogueSnapshot snapshot = loaded;
+            mLoadScope.post(() -> {
+                CatalogueSnapshot patched = snapshot;
+                // Changes made while it loaded
+                for (MovieDetails movie : mChangesDuringLoad.subList(changesSeen, mChangesDuringLoad.size())) {
+                    patched = patched.withFavorite(movie, mFormatter);
+                }
+                if (--mLoadsInFlight == 0) {
+                    mChangesDuringLoad.clear();
+                }
+                mSnapshot = patched;
+                publish();
+            });
+        });
+    }
+
+    // Compose the grid from the snapshot for the categories selected in shared preferences
+    private void publish() {
+        mHandler.removeCallbacks(mPublish);
+        Application app = getApplication();
+        List<MovieItem> list = mSnapshot.compose(
+                mPreferences.getBoolean(app.getString(R.string.popular_key), true),
+                mPreferences.getBoolean(app.getString(R.string.top_rated_key), true),
+                mPreferences.getBoolean(app.getString(R.string.favorites_key), true));
+        AppLog.d(TAG, () -> "Poster list: " + list.size() + " movies");
+        mMovies.setValue(list);
+    }
+
+    @Override
+    public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
+        Application app = getApplication();
+        if (app.getString(R.string.popular_key).equals(key) || app.getString(R.string.top_rated_key).equals(key)
+                || app.getString(R.string.favorites_key).equals(key)) {
+            mHandler.removeCallbacks(mPublish);
+            mHandler.postDelayed(mPublish, FILTER_DELAY_MS);
+        }
+    }
+
+    @Override
+    public void onFavoriteChanged(MovieDetails movie) {
+        if (mLoadsInFlight > 0) {
+            mChangesDuringLoad.add(movie);
+        }
+        mSnapshot = mSnapshot.withFavorite(movie, mFormatter);
+        publish();
+    }
+
+    public int getPosition() {
+        Integer position = mState.get(POSITION);
+        return position == null ? 0 : position;
+    }
+
+    public void setPosition(int position) {
+        mState.set(POSITION, position);
+    }
+
+    @Override
+    protected void onCleared() {
+        mHandler.removeCallbacks(mPublish);
+        mPreferences.unregisterOnSharedPreferenceChangeListener(this);
+        ConnectivityMonitor.get().cancel(CATALOGUE_REFRESH);
+        FavoriteStore.getInstance(getApplication()).removeListener(this);
+        mLoadScope.close();
+    }
+}
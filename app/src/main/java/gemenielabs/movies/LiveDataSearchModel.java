@@ -0,0 +1,188 @@
+package gemenielabs.movies;
+
+import android.app.Application;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.LruCache;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.AndroidViewModel;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+import androidx.lifecycle.SavedStateHandle;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import gemenielabs.movies.Database.MovieDao;
+import gemenielabs.movies.Database.MovieDatabase;
+import gemenielabs.movies.Database.MovieDetails;
+
+/**
+ * Owns title search for the main screen.
+ *
+ * Typing is debounced, so only a pause in typing starts a search. Each search shows local title
+ * matches first and then appends TMDB's /search/multi hits, which are ingested through
+ * {@link GetWebData} so a result opens without another fetch. Starting a search cancels the
+ * previous one's OkHttp call, and remote hits are cached per query.
+ */
+public class LiveDataSearchModel extends AndroidViewModel implements MemoryController.Trimmable {
+
+    private static final String QUERY = "search_query";
+    private static final long DEBOUNCE_MS = 300;
+    // Queries shorter than this match too much to be worth a network call
+    private static final int MIN_REMOTE_QUERY = 2;
+    private static final int LOCAL_LIMIT = 20;
+    private static final int CACHED_QUERIES = 20;
+    private static final String SEARCH_REFRESH = "search";
+
+    private final SavedStateHandle mState;
+    private final MovieDao mMovieDao;
+    private final MovieItem.Formatter mFormatter;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final MutableLiveData<List<MovieItem>> mResults = new MutableLiveData<>();
+    // Remote hits by normalized query
+    private final LruCache<String, List<MovieDetails>> mRemoteCache;
+    private final LoadScope mScope = new LoadScope();
+    // Bumped for every search, so a superseded one drops its results; written on the main thread
+    private volatile int mGeneration;
+    private final Runnable mSearch = this::search;
+
+    public LiveDataSearchModel(@NonNull Application application, @NonNull SavedStateHandle state) {
+        super(application);
+        mState = state;
+        mMovieDao = MovieDatabase.getInstance(application).movieDao();
+        mFormatter = new MovieItem.Formatter(application);
+        MemoryController memoryController = MemoryController.get();
+        mRemoteCache = new LruCache<>(memoryController.objectCacheCapacity(CACHED_QUERIES));
+        memoryController.register(this);
+    }
+
+    public LiveData<List<MovieItem>> getResults() {
+        return mResults;
+    }
+
+    // The query being searched, kept across process death so the search box can be restored
+    public String getQuery() {
+        String query = mState.get(QUERY);
+        return query == null ? "" : query;
+    }
+
+    /**
+     * Update the query as the user types. The search runs once typing pauses; an empty query
+     * clears the results straight away.
+     */
+    public void setQuery(String query) {
+        String normalized = query == null ? "" : query.trim();
+        if (normalized.equals(getQuery()) && mResults.getValue() != null) {
+            return;
+        }
+        mState.set(QUERY, normalized);
+        mHandler.removeCallbacks(mSearch);
+        cancelSearch();
+        if (normalized.isEmpty()) {
+            mResults.setValue(Collections.<MovieItem>emptyList());
+            return;
+        }
+        mHandler.postDelayed(mSearch, DEBOUNCE_MS);
+    }
+
+    private void search() {
+        cancelSearch();
+        final int generation = mGeneration;
+        final String query = getQuery();
+        final String cacheKey = query.toLowerCase(Locale.ROOT);
+        mScope.execute(() -> {
+            // Escape LIKE wildcards so the query matches literally
+            String pattern = "%" + query.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+            List<MovieDetails> local = mMovieDao.searchTitles(pattern, LOCAL_LIMIT);
+            List<MovieItem> localItems = mFormatter.formatAll(local);
+            postIfCurrent(generation, () -> mResults.setValue(localItems));
+
+            List<MovieDetails> remote = mRemoteCache.get(cacheKey);
+            if (remote == null && query.length() >= MIN_REMOTE_QUERY) {
+                if (GetWebData.isOffline()) {
+                    // Local matches only for now; search TMDB for whatever is typed once back online
+                    postIfCurrent(generation, () -> ConnectivityMonitor.get().defer(SEARCH_REFRESH,
+                            ConnectivityMonitor.PRIORITY_SEARCH, mSearch));
+                    return;
+                }
+                if (generation != mGeneration) {
+                    return;
+                }
+                remote = new GetWebData(mScope, mMovieDao)
+                        .searchMulti(getApplication().getString(R.string.moviedb_api_key), query);
+                if (remote != null && generation == mGeneration) {
+                    mRemoteCache.put(cacheKey, remote);
+                }
+            }
+            if (remote == null || remote.isEmpty()) {
+                return;
+            }
+            List<MovieItem> merged = mFormatter.formatAll(merge(local, remote));
+            postIfCurrent(generation, () -> mResults.setValue(merged));
+        });
+    }
+
+    // Deliver on the main thread unless a newer search has started since
+    private void postIfCurrent(int generation, Runnable callback) {
+        mScope.post(() -> {
+            if (generation == mGeneration) {
+                callback.run();
+            }
+        });
+    }
+
+    // Local rows first, then remote hits that aren't already listed
+    private static List<MovieDetails> merge(List<MovieDetails> local, List<MovieDetails> remote) {
+        List<MovieDetails> merged = new ArrayList<>(local);
+        Set<Integer> ids = new HashSet<>();
+        for (MovieDetails movieDetails : local) {
+            ids.add(movieDetails.getId());
+        }
+        for (MovieDetails movieDetails : remote) {
+            if (ids.add(movieDetails.getId())) {
+                merged.add(movieDetails);
+            }
+        }
+        return merged;
+    }
+
+    // Supersede the search in progress and cancel its network call
+    private void cancelSearch() {
+        ConnectivityMonitor.get().cancel(SEARCH_REFRESH);
+        mGeneration++;
+        mScope.cancelCalls();
+    }
+
+    @Override
+    public String name() {
+        return "search";
+    }
+
+    @Override
+    public int size() {
+        return mRemoteCache.size();
+    }
+
+    @Override
+    public void trim(float fraction) {
+        if (fraction <= 0f) {
+            mRemoteCache.evictAll();
+        } else {
+            mRemoteCache.trimToSize((int) (mRemoteCache.size() * fraction));
+        }
+    }
+
+    @Override
+    protected void onCleared() {
+        mHandler.removeCallbacks(mSearch);
+        cancelSearch();
+        mScope.close();
+        MemoryController.get().unregister(this);
+    }
+}
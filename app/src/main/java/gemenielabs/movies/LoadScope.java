@@ -0,0 +1,155 @@
+package gemenielabs.movies;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import okhttp3.Call;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * Owns the background work a ViewModel starts on behalf of its screen, and is closed from
+ * onCleared().
+ *
+ * Once closed, queued tasks are dropped, in-flight OkHttp calls are cancelled and callbacks
+ * posted through {@link #post(Runnable)} are suppressed, so nothing touches a destroyed screen.
+ */
+public class LoadScope {
+
+    // Thrown by fetch() for a call cancelled on purpose, which callers needn't report
+    public static class CancelledException extends IOException {
+        CancelledException(String message) {
+            super(message);
+        }
+    }
+
+    // Thrown by fetch() for a response outside 2xx; the error body is never handed to the caller
+    public static class HttpException extends IOException {
+        public final int code;
+        // How long the server asked callers to wait, from Retry-After; 0 if it didn't say
+        public final long retryAfterMs;
+
+        HttpException(int code, long retryAfterMs, String message) {
+            super(message);
+            this.code = code;
+            this.retryAfterMs = retryAfterMs;
+        }
+    }
+
+ = Executors.newCachedThreadPool();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Set<Call> calls = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    private volatile boolean closed;
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    // Run a task in the background unless the scope is already closed
+    public void execute(Runnable task) {
+        if (closed) {
+            return;
+        }
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            // Closed between the check and the submit; dropping the task is the intent
+        }
+    }
+
+    // Deliver a result on the main thread, skipped if the scope closes before it runs
+    public void post(Runnable callback) {
+        if (closed) {
+            return;
+        }
+        mainHandler.post(() -> {
+            if (!closed) {
+                callback.run();
+            }
+        });
+    }
+
+    /**
+     * Execute a request and return its body, keeping the call cancellable until the body is read.
+     * A response outside 2xx throws an {@link HttpException} instead of returning its body.
+     */
+    public String fetch(OkHttpClient client, Request request) throws IOException {
+        if (closed) {
+            throw new CancelledException("Load cancelled");
+        }
+        Call call = client.newCall(request);
+        calls.add(call);
+        try {
+            // close() may have run between the check above and registering the call
+            if (closed) {
+                call.cancel();
+            }
+            try (Response response = call.execute()) {
+                if (!response.isSuccessful()) {
+                    throw new HttpException(response.code(), retryAfterMs(response),
+                            "HTTP " + response.code() + " for " + request.url().encodedPath());
+                }
+                ResponseBody body = response.body();
+                if (body == null) {
+                    throw new IOException("Empty response for " + request.url());
+                }
+                return body.string();
+            }
+        } catch (IOException e) {
+            if (call.isCanceled() && !(e instanceof CancelledException)) {
+                throw new CancelledException("Load cancelled: " + request.url());
+            }
+            throw e;
+        } finally {
+            calls.remove(call);
+        }
+    }
+
+    // Retry-After is either a number of seconds or an HTTP date
+    private static long retryAfterMs(Response response) {
+        String retryAfter = response.header("Retry-After");
+        if (retryAfter == null) {
+            return 0;
+        }
+        try {
+            return Math.max(0, Long.parseLong(retryAfter.trim()) * 1000);
+        } catch (NumberFormatException e) {
+            Date date = response.headers().getDate("Retry-After");
+            return date == null ? 0 : Math.max(0, date.getTime() - System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Cancel the OkHttp calls in flight without closing the scope, e.g. when a newer request
+     * supersedes them. Their fetch() throws a {@link CancelledException}.
+     */
+    public void cancelCalls() {
+        for (Call call : calls) {
+            call.cancel();
+        }
+    }
+
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        executor.shutdownNow();
+        for (Call call : calls) {
+            call.cancel();
+        }
+        calls.clear();
+        mainHandler.removeCallbacksAndMessages(null);
+    }
+}
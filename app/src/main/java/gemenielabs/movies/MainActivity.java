@@ -4,43 +4,52 @@ import android.content.Intent;
 import android.content.SharedPreferences;
 import android.os.Bundle;
 import android.preference.PreferenceManager;
+import android.text.TextUtils;
 import android.transition.Explode;
-import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
 
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.appcompat.widget.SearchView;
 import androidx.core.app.ActivityOptionsCompat;
+import androidx.core.view.ViewCompat;
 import androidx.lifecycle.Observer;
 import androidx.lifecycle.ViewModelProvider;
 import androidx.recyclerview.widget.RecyclerView;
 import androidx.recyclerview.widget.StaggeredGridLayoutManager;
-import androidx.room.Room;
 
 import java.util.List;
-import java.util.concurrent.Executors;
 
 import gemenielabs.movies.Adapter.PosterRecycler;
-import gemenielabs.movies.Database.MovieDao;
-import gemenielabs.movies.Database.MovieDatabase;
 import gemenielabs.movies.Database.MovieDetails;
 
 
-public class MainActivity extends AppCompatActivity implements SharedPreferences.OnSharedPreferenceChangeListener, PosterRecycler.vHClickListener {
+public class MainActivity extends AppCompatActivity implements PosterRecycler.vHClickListener {
 
-    public static final String RESULTS = "results";
     public static final String MOVIE_ID = "json_string";
     private static final String POSITION = "position";
     public static final String MOVIE_DB_IMAGE_BASE = "http://image.tmdb.org/t/p/";
-    public static final String SAVED_STRING = "saved_string";
-    public static final String IMAGE_SIZE = "w185";
     public static final String IS_FAVORITE = "is_favorite";
-    public static MovieDao movieDao;
+    public static final String TITLE = "title";
+    public static final String OVERVIEW = "overview";
+    public static final String VOTE_AVERAGE = "vote_average";
+    public static final String RELEASE_DATE = "release_date";
+    public static final String POSTER_PATH = "poster_path";
+    // Display text the grid already formatted, so the details header doesn't format it again
+    public static final String RATING_TEXT = "rating_text";
+    public static final String RELEASE_DATE_TEXT = "release_date_text";
 
     private LiveDataMovieModel mLiveDataMovieModel;
+    private LiveDataSearchModel mLiveDataSearchModel;
     private SharedPreferences sharedPreferences;
     private PosterRecycler posterRecycler;
+    private StaggeredGridLayoutManager staggeredGridLayoutManager;
+    // Grid position still to be applied once the list has items, or -1 when done
+    private int pendingPosition = -1;
+    private boolean reportedFullyDrawn;
+    // While the search box is open the grid shows search results instead of the catalogue
+    private boolean searching;
 
     public RecyclerView posterList;
 
@@ -52,103 +61,163 @@ public class MainActivity extends AppCompatActivity implements SharedPreferences
 
         // Get the default SharedPreferences instance
         sharedPreferences = PreferenceManager.getDefaultSharedPreferences(this);
-        sharedPreferences.registerOnSharedPreferenceChangeListener(this);
 
-        // Initialize the MovieDatabase
-        MovieDatabase db = Room.databaseBuilder(getApplicationContext(), MovieDatabase.class, "moviedatabase").build();
-        movieDao = db.movieDao();
-
-        // Create and observe the LiveDataMovieModel
-        mLiveDataMovieModel = new ViewModelProvider.AndroidViewModelFactory(getApplication()).create(LiveDataMovieModel.class);
-        mLiveDataMovieModel.getMovies().observe(this, posterObserver);
-
-        // Retrieve movie details from the web and set the poster list
-        Executors.newSingleThreadExecutor().execute(() -> {
-            GetWebData getWebData = new GetWebData();
-            getWebData.getMovieDetails(getString(R.string.moviedb_api_key));
-            setPosterList();
-        });
+        // The ViewModel survives rotation, so data and loading state are not rebuilt here
+        mLiveDataMovieModel = new ViewModelProvider(this).get(LiveDataMovieModel.class);
+        if (savedInstanceState != null) {
+            pendingPosition = mLiveDataMovieModel.getPosition();
+        } else {
+            pendingPosition = sharedPreferences.getInt(POSITION, 0);
+        }
+
+        mLiveDataSearchModel = new ViewModelProvider(this).get(LiveDataSearchModel.class);
+        searching = !TextUtils.isEmpty(mLiveDataSearchModel.getQuery());
+        if (searching) {
+            // Re-runs the restored query if its results were lost with the process
+            mLiveDataSearchModel.setQuery(mLiveDataSearchModel.getQuery());
+        }
 
         createRecycler();
+        mLiveDataMovieModel.getMovies().observe(this, posterObserver);
+        mLiveDataSearchModel.getResults().observe(this, searchObserver);
+        mLiveDataMovieModel.start();
         getWindow().setExitTransition(new Explode());
     }
 
     // Create the poster RecyclerView
     public void createRecycler() {
-        StaggeredGridLayoutManager staggeredGridLayoutManager = new StaggeredGridLayoutManager(2, StaggeredGridLayoutManager.VERTICAL);
+        // Wider windows get more columns rather than upscaled posters
+        int spanCount = PosterSize.forGrid(this).spanCount;
+        staggeredGridLayoutManager = new StaggeredGridLayoutManager(spanCount, StaggeredGridLayoutManager.VERTICAL);
         posterList.setLayoutManager(staggeredGridLayoutManager);
         posterRecycler = new PosterRecycler(this);
         posterList.setAdapter(posterRecycler);
-        posterList.scrollToPosition(sharedPreferences.getInt(POSITION, 0));
     }
 
     // Observer for the poster LiveData
-    Observer<List<MovieDetails>> posterObserver = movieDetails -> {
-        posterRecycler.setList(movieDetails);
-    };
-
-    // Set the poster list based on shared preferences
-    public void setPosterList() {
-        Executors.newSingleThreadExecutor().execute(() -> {
-            List<MovieDetails> list = movieDao.getAll();
-            list.clear();
-
-            if (sharedPreferences.getBoolean(getString(R.string.popular_key), true)) {
-                list.addAll(movieDao.loadPopular());
-            }
-            if (sharedPreferences.getBoolean(getString(R.string.top_rated_key), true)) {
-                list.addAll(movieDao.loadTopRated());
+    Observer<List<MovieItem>> posterObserver = movieItems -> {
+        if (searching) {
+            return;
+        }
+        posterRecycler.setList(movieItems, () -> {
+            if (movieItems.isEmpty()) {
+                return;
             }
-            if (sharedPreferences.getBoolean(getString(R.string.favorites_key), true) && movieDao.loadFavorites().size() > 0) {
-                Log.i("TAG FAVORITES", movieDao.loadFavorites().size() + " ");
-                list.addAll(movieDao.loadFavorites());
+            if (pendingPosition >= 0) {
+                posterList.scrollToPosition(Math.min(pendingPosition, movieItems.size() - 1));
+                pendingPosition = -1;
             }
-            Log.i("LIST", "" + list.size());
-            // Log the movies in the list
-            for (MovieDetails movie : list) {
-                Log.i("TAG", "list: " + movie.getTitle());
+            // First populated grid, usually straight from Room; this is what startup benchmarks time
+            if (!reportedFullyDrawn) {
+                reportedFullyDrawn = true;
+                posterList.post(this::reportFullyDrawn);
             }
-
-            runOnUiThread(() -> {
-                // Log the movies in the setPosterList
-                for (MovieDetails movie : list) {
-                    Log.i("TAG", "setPosterList: " + movie.getTitle());
-                }
-                mLiveDataMovieModel.getMovies().setValue(list);
-            });
         });
+    };
+
+    // Observer for search results, shown from the top as each result list arrives
+    Observer<List<MovieItem>> searchObserver = results -> {
+        if (searching) {
+            posterRecycler.setList(results, () -> posterList.scrollToPosition(0));
+        }
+    };
+
+    // First fully or partially visible grid position
+    private int firstVisiblePosition() {
+        int[] positions = staggeredGridLayoutManager.findFirstVisibleItemPositions(null);
+        return positions.length > 0 && positions[0] != RecyclerView.NO_POSITION ? positions[0] : 0;
     }
 
     @Override
-    public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
-        setPosterList();
+    protected void onStop() {
+        super.onStop();
+        // Remembered across launches so a cold start reopens the grid where it was left
+        if (pendingPosition < 0 && !searching) {
+            sharedPreferences.edit().putInt(POSITION, firstVisiblePosition()).apply();
+        }
     }
 
     @Override
     protected void onSaveInstanceState(Bundle outState) {
+        // Kept in the ViewModel's SavedStateHandle so it is restored after process death
+        if (!searching) {
+            mLiveDataMovieModel.setPosition(pendingPosition >= 0 ? pendingPosition : firstVisiblePosition());
+        }
         super.onSaveInstanceState(outState);
-        outState.putString(SAVED_STRING, RESULTS);
     }
 
     @Override
     public boolean onCreateOptionsMenu(Menu menu) {
         getMenuInflater().inflate(R.menu.main, menu);
+        MenuItem searchItem = menu.findItem(R.id.search_menu);
+        SearchView searchView = (SearchView) searchItem.getActionView();
+        searchView.setQueryHint(getString(R.string.search_hint));
+        // Reopen the search box a configuration change or process death closed
+        String query = mLiveDataSearchModel.getQuery();
+        if (!TextUtils.isEmpty(query)) {
+            searchItem.expandActionView();
+            searchView.setQuery(query, false);
+        }
+        searchItem.setOnActionExpandListener(new MenuItem.OnActionExpandListener() {
+            @Override
+            public boolean onMenuItemActionExpand(MenuItem item) {
+                searching = true;
+                return true;
+            }
+
+            @Override
+            public boolean onMenuItemActionCollapse(MenuItem item) {
+                searching = false;
+                mLiveDataSearchModel.setQuery("");
+                List<MovieItem> movies = mLiveDataMovieModel.getMovies().getValue();
+                if (movies != null) {
+                    posterObserver.onChanged(movies);
+                }
+                return true;
+            }
+        });
+        searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
+            @Override
+            public boolean onQueryTextSubmit(String query) {
+                searchView.clearFocus();
+                return true;
+            }
+
+            @Override
+            public boolean onQueryTextChange(String newText) {
+                mLiveDataSearchModel.setQuery(newText);
+                return true;
+            }
+        });
         return super.onCreateOptionsMenu(menu);
     }
 
     @Override
     public boolean onOptionsItemSelected(MenuItem item) {
-        startActivity(new Intent(this, SearchActivity.class));
+        if (item.getItemId() == R.id.settings_menu) {
+            startActivity(new Intent(this, SearchActivity.class));
+            return true;
+        }
         return super.onOptionsItemSelected(item);
     }
 
     @Override
-    public void onPosterClicked(int id, boolean x, View v) {
+    public void onPosterClicked(MovieItem movieItem, View v) {
+        MovieDetails movie = movieItem.movie;
         Intent intent = new Intent(this, DetailsActivity.class);
-        intent.putExtra(MOVIE_ID, id);
-        intent.putExtra(IS_FAVORITE, x);
+        intent.putExtra(MOVIE_ID, movie.getId());
+        intent.putExtra(IS_FAVORITE, movie.isFavorite());
+        // The details header renders from these while its full row is still loading
+        intent.putExtra(TITLE, movie.getTitle());
+        intent.putExtra(OVERVIEW, movie.getOverview());
+        intent.putExtra(VOTE_AVERAGE, movie.voteAverage);
+        intent.putExtra(RELEASE_DATE, movie.getReleaseDate());
+        intent.putExtra(POSTER_PATH, movie.getPosterPath());
+        intent.putExtra(RATING_TEXT, movieItem.rating);
+        intent.putExtra(RELEASE_DATE_TEXT, movieItem.releaseDate);
+        // Only the tapped tile takes part in the transition
+        ViewCompat.setTransitionName(v, "poster_" + movie.getId());
         ActivityOptionsCompat options = ActivityOptionsCompat.makeSceneTransitionAnimation(this, v, "poster");
         startActivity(intent, options.toBundle());
     }
 }
-
@@ -0,0 +1,107 @@
+package gemenielabs.movies;
+
+import android.os.Build;
+import android.os.Looper;
+import android.os.StrictMode;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Debug-build watchdog for work that doesn't belong on the main thread.
+ *
+ * {@link #install()} turns on a StrictMode thread policy for disk reads, disk writes, network
+ * and custom slow calls. On top of that, data-layer entry points call {@link #assertBackground}
+ * and the adapters time their binds with {@link #checkBind}. Every violation is logged with its
+ * stack trace and kept, so an instrumentation test can fail on it (see MainThreadGuardRule).
+ * StrictMode violations can only be collected on API 28+; older releases just log them.
+ *
+ * In release builds every method returns straight away.
+ */
+public final class MainThreadGuard {
+
+    private static final String TAG = "MainThreadGuard";
+    // A bind slower than this takes a visible share of a 16ms frame
+    public static final long SLOW_BIND_MS = 4;
+    private static final int MAX_KEPT = 50;
+
+    private static final ArrayDeque<Throwable> sViolations = new ArrayDeque<>();
+
+    private MainThreadGuard() {
+    }
+
+    // Install the thread policy on the calling (main) thread
+    public static void install() {
+        if (!AppLog.DEBUG) {
+            return;
+        }
+        StrictMode.ThreadPolicy.Builder builder = new StrictMode.ThreadPolicy.Builder()
+                .detectDiskReads()
+                .detectDiskWrites()
+                .detectNetwork()
+                .detectCustomSlowCalls()
+                .penaltyLog();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) {
+            builder.penaltyListener(Runnable::run, MainThreadGuard::record);
+        }
+        StrictMode.setThreadPolicy(builder.build());
+    }
+
+    /**
+     * Report a violation if called on the main thread. For entry points that block on disk or
+     * the network, where StrictMode alone would only see the I/O deep inside a library.
+     */
+    public static void assertBackground(String operation) {
+        if (AppLog.DEBUG && Looper.myLooper() == Looper.getMainLooper()) {
+            report(new IllegalStateException(operation + " called on the main thread"));
+        }
+    }
+
+    /**
+     * Report a bind that took longer than {@link #SLOW_BIND_MS}.
+     *
+     * @param startNanos System.nanoTime() taken when the bind began.
+     */
+    public static void checkBind(String adapter, long startNanos) {
+        if (!AppLog.DEBUG) {
+            return;
+        }
+        long elapsedMs = (System.nanoTime() - startNanos) / 1_000_000;
+        if (elapsedMs >= SLOW_BIND_MS) {
+            String message = adapter + ".onBindViewHolder took " + elapsedMs + "ms";
+            StrictMode.noteSlowCall(message);
+            // StrictMode's listener already records slow calls on API 28+
+            if (Build.VERSION.SDK_INT < Build.VERSION_CODES.P) {
+                report(new IllegalStateException(message));
+            }
+        }
+    }
+
+    // Violations seen since the last clear, oldest first
+    public static List<Throwable> getViolations() {
+        synchronized (sViolations) {
+            return new ArrayList<>(sViolations);
+        }
+    }
+
+    public static void clearViolations() {
+        synchronized (sViolations) {
+            sViolations.clear();
+        }
+    }
+
+    private static void report(Throwable violation) {
+        AppLog.w(TAG, violation.getMessage(), violation);
+        record(violation);
+    }
+
+    private static void record(Throwable violation) {
+        synchronized (sViolations) {
+            if (sViolations.size() == MAX_KEPT) {
+                sViolations.removeFirst();
+            }
+            sViolations.addLast(violation);
+        }
+    }
+}
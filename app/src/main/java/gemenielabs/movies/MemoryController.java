@@ -0,0 +1,235 @@
+package gemenielabs.movies;
+
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+import android.util.LruCache;
+
+import androidx.annotation.NonNull;
+
+import com.squareup.picasso.Cache;
+import com.squareup.picasso.Picasso;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * Central memory budget for the process.
+ *
+ * Sizes Picasso's bitmap cache from the device memory class (smaller, and RGB_565 decodes, on
+ * low-RAM devices), shrinks it and the registered object caches step by step as the system
+ * reports memory pressure, and exposes cache occupancy through {@link #getStats()}.
+ */
+public class MemoryController implements ComponentCallbacks2 {
+
+    /**
+     * An in-memory cache that can give memory back.
+     */
+    public interface Trimmable {
+        String name();
+
+        // Entries (or bytes, as the cache reports them) currently held
+        int size();
+
+        /**
+         * Release memory for the given pressure.
+         *
+         * @param fraction Share of the current contents to keep, 0 meaning clear everything.
+         */
+        void trim(float fraction);
+    }
+
+    // Snapshot of cache occupancy
+    public static class Stats {
+        public final int imageCacheBytes;
+        public final int imageCacheMaxBytes;
+        public final int imageCacheHits;
+        public final int imageCacheMisses;
+        public final int imageCacheEvictions;
+        public final List<String> objectCaches;
+
+        Stats(BitmapCache cache, List<String> objectCaches) {
+            imageCacheBytes = cache.size();
+            imageCacheMaxBytes = cache.maxSize();
+            imageCacheHits = cache.bitmaps.hitCount();
+            imageCacheMisses = cache.bitmaps.missCount();
+            imageCacheEvictions = cache.bitmaps.evictionCount();
+            this.objectCaches = objectCaches;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return "images " + imageCacheBytes + "/" + imageCacheMaxBytes + " bytes, "
+                    + imageCacheHits + " hits, " + imageCacheMisses + " misses, "
+                    + imageCacheEvictions + " evictions; objects " + objectCaches;
+        }
+    }
+
+    // Picasso's memory cache, backed by a byte-sized LRU that can be trimmed to any size
+    static class BitmapCache implements Cache {
+        final LruCache<String, Bitmap> bitmaps;
+
+        BitmapCache(int maxBytes) {
+            bitmaps = new LruCache<String, Bitmap>(maxBytes) {
+                @Override
+                protected int sizeOf(String key, Bitmap value) {
+                    return value.getAllocationByteCount();
+                }
+            };
+        }
+
+        @Override
+        public Bitmap get(@NonNull String key) {
+            return bitmaps.get(key);
+        }
+
+        @Override
+        public void set(@NonNull String key, @NonNull Bitmap bitmap) {
+            bitmaps.put(key, bitmap);
+        }
+
+        @Override
+        public int size() {
+            return bitmaps.size();
+        }
+
+        @Override
+        public int maxSize() {
+            return bitmaps.maxSize();
+        }
+
+        @Override
+        public void clear() {
+            bitmaps.evictAll();
+        }
+
+        // Picasso keys start with the uri followed by a newline and the request options
+        @Override
+        public void clearKeyUri(@NonNull String keyPrefix) {
+            for (String key : bitmaps.snapshot().keySet()) {
+                if (key.startsWith(keyPrefix) && key.length() > keyPrefix.length()
+                        && key.charAt(keyPrefix.length()) == '\n') {
+                    bitmaps.remove(key);
+                }
+            }
+        }
+
+        void trimToSize(int maxBytes) {
+            bitmaps.trimToSize(maxBytes);
+        }
+    }
+
+    private static final int MB = 1024 * 1024;
+    // Share of the app's heap given to decoded bitmaps
+    private static final int IMAGE_CACHE_DIVISOR = 7;
+    private static final int LOW_RAM_IMAGE_CACHE_DIVISOR = 12;
+    // At or below this memory class devices are treated as low-RAM even if not flagged as such
+    private static final int LOW_MEMORY_CLASS_MB = 64;
+
+    private static MemoryController sInstance;
+
+    private final BitmapCache mImageCache;
+    private final boolean mLowRam;
+    // Weakly held so registering a screen-scoped cache never leaks the screen
+    private final Set<Trimmable> mTrimmables = Collections.newSetFromMap(new WeakHashMap<>());
+
+    private MemoryController(Context context) {
+        ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        int memoryClass = activityManager.getMemoryClass();
+        mLowRam = activityManager.isLowRamDevice() || memoryClass <= LOW_MEMORY_CLASS_MB;
+        int divisor = mLowRam ? LOW_RAM_IMAGE_CACHE_DIVISOR : IMAGE_CACHE_DIVISOR;
+        mImageCache = new BitmapCache(memoryClass * MB / divisor);
+    }
+
+    /**
+     * Create the controller, give the Picasso builder the sized memory cache and start listening
+     * for memory pressure. Call once from Application.onCreate, before the Picasso singleton is built.
+     */
+    public static void install(Context context, Picasso.Builder builder) {
+        Context appContext = context.getApplicationContext();
+        sInstance = new MemoryController(appContext);
+        builder.memoryCache(sInstance.mImageCache);
+        if (sInstance.mLowRam) {
+            // Posters are opaque, so dropping alpha halves each bitmap at no visible cost
+            builder.defaultBitmapConfig(Bitmap.Config.RGB_565);
+        }
+        appContext.registerComponentCallbacks(sInstance);
+    }
+
+    public static MemoryController get() {
+        return sInstance;
+    }
+
+    public int getImageCacheMaxBytes() {
+        return mImageCache.maxSize();
+    }
+
+    // Entry limit for an object cache: the normal capacity, halved on low-RAM devices
+    public int objectCacheCapacity(int normalCapacity) {
+        return mLowRam ? Math.max(1, normalCapacity / 2) : normalCapacity;
+    }
+
+    public void register(Trimmable trimmable) {
+        synchronized (mTrimmables) {
+            mTrimmables.add(trimmable);
+        }
+    }
+
+    public void unregister(Trimmable trimmable) {
+        synchronized (mTrimmables) {
+            mTrimmables.remove(trimmable);
+        }
+    }
+
+    public Stats getStats() {
+        List<String> objectCaches = new ArrayList<>();
+        synchronized (mTrimmables) {
+            for (Trimmable trimmable : mTrimmables) {
+                objectCaches.add(trimmable.name() + "=" + trimmable.size());
+            }
+        }
+        return new Stats(mImageCache, objectCaches);
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        if (level >= TRIM_MEMORY_MODERATE || level == TRIM_MEMORY_RUNNING_CRITICAL) {
+            // Next in line to be killed, or the foreground is starving: drop everything
+            trim(0f);
+        } else if (level >= TRIM_MEMORY_BACKGROUND || level == TRIM_MEMORY_RUNNING_LOW) {
+            trim(0.25f);
+        } else if (level >= TRIM_MEMORY_UI_HIDDEN || level == TRIM_MEMORY_RUNNING_MODERATE) {
+            trim(0.5f);
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        trim(0f);
+    }
+
+    @Override
+    public void onConfigurationChanged(@NonNull Configuration newConfig) {
+    }
+
+    private void trim(float fraction) {
+        if (fraction <= 0f) {
+            mImageCache.clear();
+        } else {
+            mImageCache.trimToSize((int) (mImageCache.size() * fraction));
+        }
+        List<Trimmable> trimmables;
+        synchronized (mTrimmables) {
+            trimmables = new ArrayList<>(mTrimmables);
+        }
+        for (Trimmable trimmable : trimmables) {
+            trimmable.trim(fraction);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package gemenielabs.movies;
+
+import android.content.Context;
+
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import gemenielabs.movies.Database.MovieDetails;
+
+/**
+ * A movie as the poster grid and the details header show it.
+ *
+ * The grid poster URL and the rating and release date text are built once, off the main thread,
+ * so binding a tile or the header only hands ready values to views.
+ */
+public class MovieItem {
+
+    public final MovieDetails movie;
+    // Full poster URL at the grid's size bucket
+    public final String posterUrl;
+    public final String rating;
+    public final String releaseDate;
+
+    MovieItem(MovieDetails movie, String posterUrl, String rating, String releaseDate) {
+        this.movie = movie;
+        this.posterUrl = posterUrl;
+        this.rating = rating;
+        this.releaseDate = releaseDate;
+    }
+
+    // The same display values over a copy with the favorite flag changed
+    public MovieItem withFavorite(boolean favorite) {
+        return new MovieItem(movie.withFavorite(favorite), posterUrl, rating, releaseDate);
+    }
+
+    /**
+     * Builds items for one screen's sizes and the device locale. Safe to share between threads.
+     */
+    public static class Formatter {
+
+        private final PosterSize mPosterSize;
+        private final SimpleDateFormat mTmdbDate = new SimpleDateFormat("yyyy-MM-dd", Locale.US);
+        private final DateFormat mDisplayDate = DateFormat.getDateInstance(DateFormat.MEDIUM);
+
+        public Formatter(Context context) {
+            mPosterSize = PosterSize.forGrid(context);
+        }
+
+        public synchronized MovieItem format(MovieDetails movie) {
+            return new MovieItem(movie, mPosterSize.url(movie.getPosterPath()),
+                    String.valueOf(movie.voteAverage), formatDate(movie.getReleaseDate()));
+        }
+
+        public List<MovieItem> formatAll(List<MovieDetails> movies) {
+            List<MovieItem> items = new ArrayList<>(movies.size());
+            for (MovieDetails movie : movies) {
+                items.add(format(movie));
+            }
+            return items;
+        }
+
+        // TMDB dates are yyyy-MM-dd; anything else is shown as it came
+        private String formatDate(String date) {
+            if (date == null || date.isEmpty()) {
+                return "";
+            }
+            try {
+                return mDisplayDate.format(mTmdbDate.parse(date));
+            } catch (ParseException e) {
+                return date;
+            }
+        }
+    }
+}
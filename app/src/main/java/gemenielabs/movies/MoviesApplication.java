@@ -0,0 +1,37 @@
+package gemenielabs.movies;
+
+import android.app.Application;
+import android.os.StrictMode;
+import android.preference.PreferenceManager;
+
+import com.squareup.picasso.Picasso;
+
+public class MoviesApplication extends Application {
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        // Debug builds: report disk and network access on the main thread, and slow binds.
+        // Installed first so nothing below is exempt
+        MainThreadGuard.install();
+        // Size the memory and disk image caches before anything touches Picasso
+        Picasso.Builder builder = new Picasso.Builder(this);
+        MemoryController.install(this, builder);
+        ImageDiskCache.install(this, builder);
+        Picasso.setSingletonInstance(builder.build());
+        // Track connectivity so offline opens skip the network instead of timing out
+        ConnectivityMonitor.install(this);
+        // Keep the catalogue current in the background instead of on every launch
+        CatalogueSyncWorker.schedule(this);
+        // Screens read these preference files on the main thread, so load them once here, where
+        // it's expected, and leave the guard to report reads anywhere else. Loading them in the
+        // background instead would only move the wait to whichever screen reads them first
+        StrictMode.ThreadPolicy policy = StrictMode.allowThreadDiskReads();
+        try {
+            PreferenceManager.getDefaultSharedPreferences(this).getAll();
+            CatalogueSyncWorker.isFresh(this);
+        } finally {
+            StrictMode.setThreadPolicy(policy);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package gemenielabs.movies;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+
+import com.squareup.picasso.Callback;
+import com.squareup.picasso.Picasso;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Warms Picasso's memory and disk caches for posters the user is about to see.
+ *
+ * Work is bounded two ways: at most {@link #MAX_IN_FLIGHT} prefetches run at once with the rest
+ * queued (and the batch halved on metered networks), and a single batch never asks for more
+ * posters than fit in a quarter of the image cache, so prefetching can't evict what is already
+ * on screen.
+ */
+public class PosterPrefetcher implements MemoryController.Trimmable {
+
+    private static final int MAX_IN_FLIGHT = 4;
+    private static final int WARMED_CAPACITY = 200;
+    // Share of the image cache a single prefetch batch may fill
+    private static final int CACHE_FRACTION = 4;
+
+    private static volatile PosterPrefetcher sInstance;
+
+    private final Object mRequestTag = new Object();
+    private final ConnectivityManager mConnectivityManager;
+    private final long mMemoryBudget;
+    private final AtomicInteger mInFlight = new AtomicInteger();
+    private final ArrayDeque<String> mPending = new ArrayDeque<>();
+    private PosterSize mPendingSize;
+    // Recently warmed urls, so scrolling back and forth doesn't request them again
+    private final Set<String> mWarmed;
+
+    private PosterPrefetcher(Context context) {
+        MemoryController memoryController = MemoryController.get();
+        final int warmedCapacity = memoryController.objectCacheCapacity(WARMED_CAPACITY);
+        mWarmed = Collections.synchronizedSet(Collections.newSetFromMap(
+                new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                        return size() > warmedCapacity;
+                    }
+                }));
+        mConnectivityManager = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        mMemoryBudget = memoryController.getImageCacheMaxBytes() / CACHE_FRACTION;
+        memoryController.register(this);
+    }
+
+    public static PosterPrefetcher getInstance(Context context) {
+        if (sInstance == null) {
+            synchronized (PosterPrefetcher.class) {
+                if (sInstance == null) {
+                    sInstance = new PosterPrefetcher(context.getApplicationContext());
+                }
+            }
+        }
+        return sInstance;
+    }
+
+    /**
+     * Warm the given posters at the given size, nearest first. A new batch replaces whatever was
+     * still queued from the previous one, since the user has moved on from it.
+     */
+    public void prefetch(List<String> posterPaths, PosterSize size) {
+        // Decoded ARGB_8888 size of one poster at the target size
+        long posterBytes = Math.max(1L, (long) size.width * size.height * 4);
+        int budget = (int) Math.min(posterPaths.size(), Math.max(1, mMemoryBudget / posterBytes));
+        if (mConnectivityManager != null && mConnectivityManager.isActiveNetworkMetered()) {
+            budget = Math.max(1, budget / 2);
+        }
+        synchronized (mPending) {
+            mPending.clear();
+            mPendingSize = size;
+            for (int i = 0; i < budget; i++) {
+                String posterPath = posterPaths.get(i);
+                if (posterPath != null && !mWarmed.contains(size.url(posterPath))) {
+                    mPending.add(posterPath);
+                }
+            }
+        }
+        drain();
+    }
+
+    // Start queued prefetches until the in-flight limit is reached
+    private void drain() {
+        while (true) {
+            final String posterPath;
+            final String url;
+            final PosterSize size;
+            synchronized (mPending) {
+                if (mInFlight.get() >= MAX_IN_FLIGHT || mPending.isEmpty()) {
+                    return;
+                }
+                posterPath = mPending.poll();
+                size = mPendingSize;
+                url = size.url(posterPath);
+                if (!mWarmed.add(url)) {
+                    continue;
+                }
+                mInFlight.incrementAndGet();
+            }
+            // Same size and transformation as the grid, so the decoded bitmap lands under its cache key
+            size.load(posterPath)
+                    .priority(Picasso.Priority.LOW)
+                    .tag(mRequestTag)
+                    .fetch(new Callback() {
+                        @Override
+                        public void onSuccess() {
+                            mInFlight.decrementAndGet();
+                            drain();
+                        }
+
+                        @Override
+                        public void onError(Exception e) {
+                            mInFlight.decrementAndGet();
+                            mWarmed.remove(url);
+                            drain();
+                        }
+                    });
+        }
+    }
+
+    @Override
+    public String name() {
+        return "prefetch";
+    }
+
+    @Override
+    public int size() {
+        return mWarmed.size();
+    }
+
+    // Under pressure stop queuing, and forget what was warmed since the bitmaps may be evicted too
+    @Override
+    public void trim(float fraction) {
+        synchronized (mPending) {
+            mPending.clear();
+        }
+        if (fraction < 1f) {
+            mWarmed.clear();
+        }
+    }
+
+    public void pause() {
+        Picasso.get().pauseTag(mRequestTag);
+    }
+
+    public void resume() {
+        Picasso.get().resumeTag(mRequestTag);
+    }
+}
@@ -0,0 +1,85 @@
+package gemenielabs.movies;
+
+import android.content.Context;
+import android.content.res.Resources;
+
+import com.squareup.picasso.Picasso;
+import com.squareup.picasso.RequestCreator;
+
+/**
+ * Picks the TMDB poster size bucket (w92 ... w780) for the pixels a poster is actually drawn at,
+ * and decodes to that size.
+ *
+ * Every load of the same poster for the same surface goes through the same instance, so the
+ * grid, the prefetcher and the details screen's first frame share one memory-cache entry.
+ */
+public final class PosterSize {
+
+    public final String bucket;
+    public final int width;
+    public final int height;
+    public final int spanCount;
+
+    private PosterSize(String bucket, int width, int height, int spanCount) {
+        this.bucket = bucket;
+        this.width = width;
+        this.height = height;
+        this.spanCount = spanCount;
+    }
+
+    /**
+     * Size for the poster grid: as many columns as fit at the minimum tile width (at least two),
+     * with each tile taking an equal share of the window width.
+     */
+    public static PosterSize forGrid(Context context) {
+        Resources res = context.getResources();
+        int windowWidth = res.getDisplayMetrics().widthPixels;
+        int minTileWidth = res.getDimensionPixelSize(R.dimen.poster_tile_min_width);
+        int spanCount = Math.max(2, windowWidth / minTileWidth);
+        int tileWidth = windowWidth / spanCount;
+        int tileHeight = res.getDimensionPixelSize(R.dimen.poster_tile_height);
+        return new PosterSize(bucketFor(res, tileWidth), tileWidth, tileHeight, spanCount);
+    }
+
+    // Size for the details screen's hero poster
+    public static PosterSize forDetails(Context context) {
+        Resources res = context.getResources();
+        int width = res.getDimensionPixelSize(R.dimen.details_poster_width);
+        int height = res.getDimensionPixelSize(R.dimen.details_poster_height);
+        return new PosterSize(bucketFor(res, width), width, height, 1);
+    }
+
+    // Smallest bucket at least as wide as the target, so posters are never upscaled
+    private static String bucketFor(Resources res, int widthPx) {
+        String[] buckets = res.getStringArray(R.array.screen_size);
+        String largest = null;
+        for (String bucket : buckets) {
+            if (!bucket.startsWith("w")) {
+                continue;
+            }
+            largest = bucket;
+            if (Integer.parseInt(bucket.substring(1)) >= widthPx) {
+                return bucket;
+            }
+        }
+        return largest;
+    }
+
+    public String url(String posterPath) {
+        return MainActivity.MOVIE_DB_IMAGE_BASE + bucket + posterPath;
+    }
+
+    // A Picasso request decoded down to this size
+    public RequestCreator load(String posterPath) {
+        return loadUrl(url(posterPath));
+    }
+
+    // As load(), for a URL already built with url()
+    public RequestCreator loadUrl(String posterUrl) {
+        return Picasso.get()
+                .load(posterUrl)
+                .resize(width, height)
+                .centerCrop()
+                .onlyScaleDown();
+    }
+}
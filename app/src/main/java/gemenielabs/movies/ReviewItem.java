@@ -0,0 +1,45 @@
+package gemenielabs.movies;
+
+import gemenielabs.movies.Database.ReviewDetails;
+
+/**
+ * A review as the details screen shows it.
+ *
+ * Both the collapsed preview and the full text are built once, off the main thread, so binding
+ * only picks one of two ready strings.
+ */
+public class ReviewItem {
+
+    // Longest preview, in characters, before the text is cut at a word boundary
+    static final int PREVIEW_CHARS = 280;
+
+    public final String preview;
+    public final String full;
+    // Whether tapping shows more than the preview
+    public final boolean expandable;
+    public boolean expanded;
+
+    private ReviewItem(String preview, String full, boolean expandable) {
+        this.preview = preview;
+        this.full = full;
+        this.expandable = expandable;
+    }
+
+    public static ReviewItem from(ReviewDetails reviewDetails) {
+        String content = reviewDetails.getContent() == null ? "" : reviewDetails.getContent();
+        String footer = "\n\n" + reviewDetails.getAuthor();
+        String full = content + footer;
+        if (content.length() <= PREVIEW_CHARS) {
+            return new ReviewItem(full, full, false);
+        }
+        int cut = content.lastIndexOf(' ', PREVIEW_CHARS);
+        if (cut < PREVIEW_CHARS / 2) {
+            cut = PREVIEW_CHARS;
+        }
+        return new ReviewItem(content.substring(0, cut).trim() + "…" + footer, full, true);
+    }
+
+    public String text() {
+        return expanded ? full : preview;
+    }
+}
@@ -0,0 +1,62 @@
+package gemenielabs.movies;
+
+import android.content.Context;
+import android.content.res.Resources;
+
+import gemenielabs.movies.Database.MovieDao;
+
+/**
+ * The disk space the app allows itself, split between cached images and catalogue rows.
+ *
+ * The total and the image share come from resources. Pinned favorite posters are paid for out
+ * of the image share first, the HTTP image cache gets the rest, and the catalogue is pruned to
+ * the number of rows its share holds.
+ */
+public final class StorageBudget {
+
+    private static final long MB = 1024 * 1024;
+    // The image cache never gets less than this, however many favorites are pinned
+    private static final long MIN_IMAGE_CACHE_BYTES = 5 * MB;
+    // Rough on-disk cost of one catalogue row together with its trailers and reviews
+    private static final long ROW_BYTES = 8 * 1024;
+
+    public final long totalBytes;
+    public final long imageBytes;
+    public final int maxMovieRows;
+
+    private StorageBudget(long totalBytes, long imageBytes) {
+        this.totalBytes = totalBytes;
+        this.imageBytes = imageBytes;
+        this.maxMovieRows = (int) Math.max(1, (totalBytes - imageBytes) / ROW_BYTES);
+    }
+
+    public static StorageBudget get(Context context) {
+        Resources res = context.getResources();
+        long totalBytes = res.getInteger(R.integer.storage_budget_mb) * MB;
+        long imageBytes = totalBytes * res.getInteger(R.integer.storage_budget_image_percent) / 100;
+        return new StorageBudget(totalBytes, imageBytes);
+    }
+
+    // What is left of the image share for the LRU cache once pinned posters are paid for
+    public long imageCacheBytes(long pinnedBytes) {
+        return Math.max(MIN_IMAGE_CACHE_BYTES, imageBytes - pinnedBytes);
+    }
+
+    /**
+     * Prune the catalogue back to its share of the budget. Favorites are never removed; rows no
+     * longer on either grid go first, least popular first, along with their trailers and reviews.
+     *
+     * @return The number of rows removed.
+     */
+    public int enforce(MovieDao movieDao) {
+        int excess = movieDao.countMovies() - maxMovieRows;
+        if (excess <= 0) {
+            return 0;
+        }
+        int removed = movieDao.pruneMovies(excess);
+        movieDao.pruneOrphanVideos();
+        movieDao.pruneOrphanReviews();
+        movieDao.pruneOrphanReviewProgress();
+        return removed;
+    }
+}
@@ -0,0 +1,152 @@
+package gemenielabs.movies;
+
+import android.annotation.SuppressLint;
+import android.content.Context;
+import android.os.StrictMode;
+import android.view.View;
+import android.view.ViewGroup;
+import android.webkit.JavascriptInterface;
+import android.webkit.WebSettings;
+import android.webkit.WebView;
+
+import org.json.JSONObject;
+
+/**
+ * Inline YouTube player for the details screen.
+ *
+ * The WebView is created lazily by {@link #warmUp()} (called once the screen is idle and the
+ * movie is known to have trailers) and loads the IFrame player a single time. Switching trailers
+ * then only cues a new video id on the already loaded player instead of reloading the page.
+ * Under memory pressure the WebView is dropped while nothing is playing and rebuilt on the next tap.
+ */
+public class TrailerPlayer implements MemoryController.Trimmable {
+
+    private static final String BASE_URL = "https://www.youtube.com";
+    private static final String PLAYER_HTML = "<html><head>"
+            + "<meta name=\"viewport\" content=\"width=device-width, initial-scale=1\">"
+            + "<style>html,body,#player{margin:0;width:100%;height:100%;background:#000;}</style>"
+            + "</head><body><div id=\"player\"></div>"
+            + "<script src=\"https://www.youtube.com/iframe_api\"></script>"
+            + "<script>"
+            + "var player;"
+            + "function onYouTubeIframeAPIReady(){"
+            + "player=new YT.Player('player',{width:'100%',height:'100%',playerVars:{playsinline:1},"
+            + "events:{onReady:function(){TrailerBridge.onReady();}}});}"
+            + "</script></body></html>";
+
+    private final ViewGroup container;
+    private WebView webView;
+    private boolean ready;
+    private String pendingKey;
+    private String currentKey;
+
+    public TrailerPlayer(ViewGroup container) {
+        this.container = container;
+        MemoryController.get().register(this);
+    }
+
+    /**
+     * Create the WebView and start loading the player page. Safe to call more than once.
+     */
+    @SuppressLint({"SetJavaScriptEnabled", "AddJavascriptInterface"})
+    public void warmUp() {
+        if (webView != null) {
+            return;
+        }
+        Context context = container.getContext();
+        // WebView's first construction reads and writes its provider's files; that can't move off the main thread
+        StrictMode.ThreadPolicy policy = StrictMode.allowThreadDiskWrites();
+        try {
+            webView = new WebView(context);
+        } finally {
+            StrictMode.setThreadPolicy(policy);
+        }
+        WebSettings settings = webView.getSettings();
+        settings.setJavaScriptEnabled(true);
+        settings.setMediaPlaybackRequiresUserGesture(false);
+        webView.addJavascriptInterface(new Bridge(webView), "TrailerBridge");
+        container.addView(webView, new ViewGroup.LayoutParams(
+                ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
+        webView.loadDataWithBaseURL(BASE_URL, PLAYER_HTML, "text/html", "utf-8", null);
+    }
+
+    /**
+     * Show the player and play the trailer with the given YouTube key. If the player page is
+     * still loading, the key is remembered and played as soon as it is ready.
+     */
+    public void play(String key) {
+        warmUp();
+        container.setVisibility(View.VISIBLE);
+        if (!ready) {
+            pendingKey = key;
+            return;
+        }
+        if (key.equals(currentKey)) {
+            webView.evaluateJavascript("player.playVideo();", null);
+            return;
+        }
+        currentKey = key;
+        // Quoted as a JavaScript string literal so the key can't break out of the call
+        webView.evaluateJavascript("player.loadVideoById(" + JSONObject.quote(key) + ");", null);
+    }
+
+    @Override
+    public String name() {
+        return "trailer_player";
+    }
+
+    @Override
+    public int size() {
+        return webView == null ? 0 : 1;
+    }
+
+    @Override
+    public void trim(float fraction) {
+        if (container.getVisibility() != View.VISIBLE) {
+            destroyWebView();
+        }
+    }
+
+    public void release() {
+        MemoryController.get().unregister(this);
+        destroyWebView();
+    }
+
+    private void destroyWebView() {
+        if (webView != null) {
+            container.removeView(webView);
+            webView.destroy();
+            webView = null;
+        }
+        ready = false;
+        // A tap made before the WebView went away isn't a request to play on the next warm-up
+        pendingKey = null;
+        currentKey = null;
+    }
+
+    private class Bridge {
+        // The WebView whose page this bridge answers for
+        private final WebView owner;
+
+        Bridge(WebView owner) {
+            this.owner = owner;
+        }
+
+        // Called by the player page on the WebView's JavaScript thread
+        @JavascriptInterface
+        public void onReady() {
+            container.post(() -> {
+                // Ignore a page that was destroyed or replaced while it loaded
+                if (webView != owner) {
+                    return;
+                }
+                ready = true;
+                if (pendingKey != null) {
+                    String key = pendingKey;
+                    pendingKey = null;
+                    play(key);
+                }
+            });
+        }
+    }
+}
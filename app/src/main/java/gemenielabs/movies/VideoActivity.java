@@ -4,18 +4,21 @@ import android.content.Intent;
 import android.os.Bundle;
 import android.webkit.WebView;
 
-import java.net.URL;
+import androidx.appcompat.app.AppCompatActivity;
 
-public class VideoActivity extends MainActivity {
+// Standalone trailer player. Extends AppCompatActivity directly so launching a trailer
+// doesn't rebuild the database, re-register preference listeners or refresh the catalogue.
+public class VideoActivity extends AppCompatActivity {
 
+    public static final String KEY = "KEY";
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.video_activity);
-        WebView video = (WebView) findViewById(R.id.webview);
+        WebView video = findViewById(R.id.webview);
         Intent intent = getIntent();
-        String key = intent.getStringExtra("KEY");
+        String key = intent.getStringExtra(KEY);
         String url = "https://www.youtube.com/embed/" + key + "?API_key=" + getString(R.string.google_youtube_api_key);
         video.loadUrl(url);
     }